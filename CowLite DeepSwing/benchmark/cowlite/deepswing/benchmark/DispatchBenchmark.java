@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.benchmark;
+
+import cowlite.deepswing.overlay.components.OverlayPanel;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to dispatch mouse events through a tree of nested
+ * <code>OverlayPanel</code>s. Every panel holds <code>breadth</code> children and
+ * the tree is <code>depth</code> panels deep, with sliders at the deepest level.
+ *
+ * @author Wessel Jongkind
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DispatchBenchmark
+{
+    /**
+     * The amount of levels of nested panels.
+     */
+    @Param({"1", "3", "5"})
+    public int depth;
+
+    /**
+     * The amount of children of every panel.
+     */
+    @Param({"2", "4", "8"})
+    public int breadth;
+
+    private OverlayPanel root;
+
+    private MouseEvent moved;
+
+    private MouseEvent pressed;
+
+    private MouseEvent released;
+
+    private MouseEvent missed;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        root = Scenes.createNestedPanels(depth, breadth, 1024);
+        moved = Scenes.mouseEvent(MouseEvent.MOUSE_MOVED, 3, 3);
+        pressed = Scenes.mouseEvent(MouseEvent.MOUSE_PRESSED, 3, 3);
+        released = Scenes.mouseEvent(MouseEvent.MOUSE_RELEASED, 3, 3);
+        missed = Scenes.mouseEvent(MouseEvent.MOUSE_MOVED, 2000, 2000);
+    }
+
+    /**
+     * Dispatches a mouse move that lands on the first leaf of the tree.
+     * @return The root of the tree.
+     */
+    @Benchmark
+    public OverlayPanel mouseMoved()
+    {
+        root.mouseMoved(moved);
+        return root;
+    }
+
+    /**
+     * Dispatches a mouse move that lands outside of every component.
+     * @return The root of the tree.
+     */
+    @Benchmark
+    public OverlayPanel mouseMovedOutside()
+    {
+        root.mouseMoved(missed);
+        return root;
+    }
+
+    /**
+     * Dispatches a press and a release on the first leaf of the tree, like a click.
+     * @return The root of the tree.
+     */
+    @Benchmark
+    public OverlayPanel mouseClicked()
+    {
+        root.mousePressed(pressed);
+        root.mouseReleased(released);
+        return root;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.benchmark;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import cowlite.deepswing.overlay.components.OverlayPanel;
+import cowlite.deepswing.overlay.components.OverlaySlider;
+import cowlite.deepswing.overlay.components.layout.GridBagLayout;
+import cowlite.deepswing.overlay.util.OverlayConstraints;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long a single pass of <code>GridBagLayout.gridComponents</code>
+ * takes. The components are laid out on a square grid in which every component
+ * spans <code>span</code> cells in both directions, and every third component
+ * has a minimum size so that the minimum size constraints have to be solved.
+ * It also measures building a panel with all components, which adds them one
+ * by one and lays them out once.
+ *
+ * @author Wessel Jongkind
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LayoutBenchmark
+{
+    /**
+     * The amount of cells in both directions of the grid.
+     */
+    @Param({"4", "16", "64"})
+    public int gridSize;
+
+    /**
+     * The amount of cells every component spans in both directions.
+     */
+    @Param({"1", "2", "4"})
+    public int span;
+
+    private final ArrayList<OverlayComponent> components = new ArrayList<>();
+
+    private final HashMap<OverlayComponent, OverlayConstraints> constraints = new HashMap<>();
+
+    private GridBagLayout layout;
+
+    private int width = 1920;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int index = 0;
+        for(int x = 0; x + span <= gridSize; x += span)
+        {
+            for(int y = 0; y + span <= gridSize; y += span)
+            {
+                OverlaySlider slider = new OverlaySlider();
+                if(index++ % 3 == 0)
+                    slider.setMinimumSize(20, 10);
+
+                OverlayConstraints c = new OverlayConstraints();
+                c.gridx(x);
+                c.gridy(y);
+                c.gridwidth(span);
+                c.gridheight(span);
+                c.weightx(1 + x % 3);
+                c.weighty(1 + y % 2);
+                c.resizing(true);
+
+                components.add(slider);
+                constraints.put(slider, c);
+            }
+        }
+
+        layout = new GridBagLayout(components, constraints);
+    }
+
+    /**
+     * Lays out all components, alternating between two widths so that every pass
+     * has to calculate new cell sizes, like a window that is being resized.
+     * @return The list of components that have been laid out.
+     */
+    @Benchmark
+    public ArrayList<OverlayComponent> gridComponents()
+    {
+        width = width == 1920 ? 1280 : 1920;
+        layout.gridComponents(width, 1080);
+        return components;
+    }
+
+    /**
+     * Adds all components to a new panel that uses constraints, and lays them out.
+     * @return The panel.
+     */
+    @Benchmark
+    public OverlayPanel buildPanel()
+    {
+        OverlayPanel panel = new OverlayPanel();
+        panel.setSize(1920, 1080);
+        panel.useComponentConstraints(true);
+
+        for(OverlayComponent comp : components)
+            panel.add(comp, constraints.get(comp));
+
+        panel.validateLayout();
+        return panel;
+    }
+}
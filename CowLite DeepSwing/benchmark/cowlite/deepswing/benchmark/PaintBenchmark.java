@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.benchmark;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import cowlite.deepswing.overlay.components.OverlayLabel;
+import cowlite.deepswing.overlay.components.OverlayPanel;
+import cowlite.deepswing.overlay.components.OverlaySlider;
+import cowlite.deepswing.overlay.core.OffscreenOverlay;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to render a tree of <code>OverlayComponent</code>s
+ * with an <code>OffscreenOverlay</code>. The tree consists of panels that each hold
+ * a label and a slider, so that every frame paints text, fills and borders.
+ *
+ * @author Wessel Jongkind
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark
+{
+    /**
+     * The total amount of components in the tree.
+     */
+    @Param({"10", "100", "1000"})
+    public int components;
+
+    /**
+     * True if the panels should be cached, false if they should be painted every frame.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private OffscreenOverlay overlay;
+
+    private OverlayPanel root;
+
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        overlay = new OffscreenOverlay(1920, 1080);
+        root = Scenes.createHud(components, overlay.getWidth(), overlay.getHeight());
+        for(OverlayComponent comp : root.getComponents())
+            comp.setCached(cached);
+        overlay.add(root);
+        overlay.render();
+
+        graphics = overlay.getImage().createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        graphics.dispose();
+    }
+
+    /**
+     * Renders the whole tree once, like a full repaint of the overlay.
+     * @return The rendered image, so that the work can not be optimized away.
+     */
+    @Benchmark
+    public BufferedImage paintFrame()
+    {
+        return overlay.renderAll();
+    }
+
+    /**
+     * Changes a single slider and renders the area that has changed, like a frame
+     * in which one live value has changed.
+     * @return The rendered image, so that the work can not be optimized away.
+     */
+    @Benchmark
+    public BufferedImage paintFrameAfterChange()
+    {
+        OverlayPanel first = (OverlayPanel) root.getComponents().get(0);
+        OverlaySlider slider = (OverlaySlider) first.getComponents().get(1);
+        slider.setPercentage(1 - slider.getPercentage());
+
+        return overlay.render();
+    }
+
+    /**
+     * Paints a single label without any container, which shows the cost of text.
+     * @return The painted image, so that the work can not be optimized away.
+     */
+    @Benchmark
+    public BufferedImage paintLabel()
+    {
+        OverlayPanel first = (OverlayPanel) root.getComponents().get(0);
+        OverlayLabel label = (OverlayLabel) first.getComponents().get(0);
+
+        graphics.setClip(0, 0, overlay.getWidth(), overlay.getHeight());
+        label.paint(graphics);
+        return overlay.getImage();
+    }
+}
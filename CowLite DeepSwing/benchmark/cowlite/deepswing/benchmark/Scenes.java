@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.benchmark;
+
+import cowlite.deepswing.overlay.components.OverlayLabel;
+import cowlite.deepswing.overlay.components.OverlayPanel;
+import cowlite.deepswing.overlay.components.OverlaySlider;
+import java.awt.event.MouseEvent;
+import javax.swing.JPanel;
+
+/**
+ * This class builds the component trees that are used by the benchmarks. All
+ * trees are built the same way every time, so that results can be compared
+ * between runs.
+ *
+ * @author Wessel Jongkind
+ */
+final class Scenes
+{
+    /**
+     * The component that is used as the source of generated mouse events.
+     */
+    private static final JPanel EVENT_SOURCE = new JPanel();
+
+    private Scenes()
+    {
+    }
+
+    /**
+     * Builds a panel that is filled with a grid of smaller panels, each holding
+     * a label and a slider, the way a HUD usually looks.
+     * @param components The total amount of components the tree should contain.
+     * @param width The width of the root panel.
+     * @param height The height of the root panel.
+     * @return The root panel of the tree.
+     */
+    static OverlayPanel createHud(int components, int width, int height)
+    {
+        OverlayPanel root = new OverlayPanel();
+        root.setSize(width, height);
+        root.setBackground(OverlayPanel.INVISIBLE);
+        root.setBorderWidth(0);
+
+        int widgets = Math.max(components / 3, 1);
+        int columns = (int) Math.ceil(Math.sqrt(widgets));
+        int rows = (int) Math.ceil(widgets / (double) columns);
+        int cellWidth = width / columns;
+        int cellHeight = height / rows;
+
+        for(int i = 0; i < widgets; i++)
+        {
+            OverlayPanel widget = new OverlayPanel();
+            widget.setLocation((i % columns) * cellWidth, (i / columns) * cellHeight);
+            widget.setSize(cellWidth, cellHeight);
+
+            OverlayLabel label = new OverlayLabel("Value " + i);
+            label.setLocation(2, 2);
+            label.setSize(cellWidth - 4, cellHeight / 2 - 2);
+            widget.add(label);
+
+            OverlaySlider slider = new OverlaySlider();
+            slider.setLocation(2, cellHeight / 2);
+            slider.setSize(cellWidth - 4, cellHeight / 2 - 2);
+            slider.setPercentage((i % 10) / 10.0);
+            widget.add(slider);
+
+            root.add(widget);
+        }
+
+        return root;
+    }
+
+    /**
+     * Builds a tree of nested panels. Every panel holds <code>breadth</code> children,
+     * and the panels at the deepest level hold sliders.
+     * @param depth The amount of levels of panels.
+     * @param breadth The amount of children of every panel.
+     * @param size The width and height of the root panel.
+     * @return The root panel of the tree.
+     */
+    static OverlayPanel createNestedPanels(int depth, int breadth, int size)
+    {
+        OverlayPanel root = new OverlayPanel();
+        root.setSize(size, size);
+        fill(root, depth, breadth, size);
+        return root;
+    }
+
+    private static void fill(OverlayPanel panel, int depth, int breadth, int size)
+    {
+        int childSize = Math.max(size / breadth, 1);
+
+        for(int i = 0; i < breadth; i++)
+        {
+            if(depth <= 1)
+            {
+                OverlaySlider slider = new OverlaySlider();
+                slider.setLocation(i * childSize, 0);
+                slider.setSize(childSize, childSize);
+                panel.add(slider);
+                continue;
+            }
+
+            OverlayPanel child = new OverlayPanel();
+            child.setLocation(i * childSize, 0);
+            child.setSize(childSize, size);
+            panel.add(child);
+            fill(child, depth - 1, breadth, childSize);
+        }
+    }
+
+    /**
+     * Creates a mouse event at the given location relative to the overlay's origin.
+     * @param id The id of the event, such as <code>MouseEvent.MOUSE_MOVED</code>.
+     * @param x The x-coordinate of the mouse.
+     * @param y The y-coordinate of the mouse.
+     * @return The mouse event.
+     */
+    static MouseEvent mouseEvent(int id, int x, int y)
+    {
+        return new MouseEvent(EVENT_SOURCE, id, System.currentTimeMillis(), 0, x, y, 1, false, MouseEvent.BUTTON1);
+    }
+
+    /**
+     * Creates a key event that is sent to text fields by the overlay.
+     * @param id The id of the event, such as <code>KeyEvent.KEY_PRESSED</code>.
+     * @param keyCode The code of the key.
+     * @param keyChar The character of the key.
+     * @return The key event.
+     */
+    static java.awt.event.KeyEvent keyEvent(int id, int keyCode, char keyChar)
+    {
+        return new java.awt.event.KeyEvent(EVENT_SOURCE, id, System.currentTimeMillis(), 0, keyCode, keyChar);
+    }
+}
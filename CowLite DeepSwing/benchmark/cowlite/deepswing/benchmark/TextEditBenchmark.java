@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.benchmark;
+
+import cowlite.deepswing.overlay.components.OverlayTextField;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to edit a large document in an <code>OverlayTextField</code>.
+ * The cursor is placed in the middle of the document, after which characters and
+ * line breaks are typed and removed again so that the document keeps the same size.
+ *
+ * @author Wessel Jongkind
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TextEditBenchmark
+{
+    /**
+     * The amount of lines in the document.
+     */
+    @Param({"100", "10000"})
+    public int lines;
+
+    /**
+     * The amount of characters on every line.
+     */
+    @Param({"80", "1000"})
+    public int lineLength;
+
+    private OverlayTextField field;
+
+    private KeyEvent typed;
+
+    private KeyEvent backspace;
+
+    private KeyEvent enter;
+
+    private KeyEvent right;
+
+    private KeyEvent left;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        StringBuilder line = new StringBuilder(lineLength);
+        for(int i = 0; i < lineLength; i++)
+            line.append((char) ('a' + i % 26));
+
+        StringBuilder text = new StringBuilder((lineLength + 1) * lines);
+        for(int i = 0; i < lines; i++)
+        {
+            if(i > 0)
+                text.append('\n');
+            text.append(line);
+        }
+
+        field = new OverlayTextField(text.toString());
+        field.setSize(800, 600);
+        field.setFocussed(true);
+
+        KeyEvent down = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_DOWN, KeyEvent.CHAR_UNDEFINED);
+        for(int i = 0; i < lines / 2; i++)
+            field.keyPressed(down);
+
+        KeyEvent moveRight = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_RIGHT, KeyEvent.CHAR_UNDEFINED);
+        for(int i = 0; i < lineLength / 2; i++)
+            field.keyPressed(moveRight);
+
+        typed = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_X, 'x');
+        enter = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_ENTER, '\n');
+        backspace = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_BACK_SPACE, '\b');
+        right = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_RIGHT, KeyEvent.CHAR_UNDEFINED);
+        left = Scenes.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.VK_LEFT, KeyEvent.CHAR_UNDEFINED);
+    }
+
+    /**
+     * Types a character in the middle of the document and removes it again.
+     * @return The text field.
+     */
+    @Benchmark
+    public OverlayTextField typeCharacter()
+    {
+        field.keyPressed(typed);
+        field.keyPressed(backspace);
+        return field;
+    }
+
+    /**
+     * Moves the cursor one character to the right and back again.
+     * @return The text field.
+     */
+    @Benchmark
+    public OverlayTextField moveCursor()
+    {
+        field.keyPressed(right);
+        field.keyPressed(left);
+        return field;
+    }
+
+    /**
+     * Splits the line in the middle of the document and merges it again.
+     * @return The text field.
+     */
+    @Benchmark
+    public OverlayTextField splitLine()
+    {
+        field.keyPressed(enter);
+        field.keyPressed(backspace);
+        return field;
+    }
+}
@@ -221,6 +221,7 @@ public class OverlayButton extends OverlayComponent implements MouseListener
         this.icon = null;
         this.label = new OverlayLabel(text);
         this.label.setSize(getCorrectedWidth(), getCorrectedHeight());
+        repaint();
     }
     
     /**
@@ -239,6 +240,7 @@ public class OverlayButton extends OverlayComponent implements MouseListener
         this.label = null;
         createIcon(new File(path));
         this.icon.setSize(getCorrectedSize());
+        repaint();
     }
     
     /**
@@ -257,6 +259,7 @@ public class OverlayButton extends OverlayComponent implements MouseListener
         this.label = null;
         createIcon(file);
         this.icon.setSize(getCorrectedSize());
+        repaint();
     }
     
     /**
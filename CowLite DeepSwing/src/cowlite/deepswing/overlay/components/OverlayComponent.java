@@ -7,15 +7,19 @@
  */
 package cowlite.deepswing.overlay.components;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
+import java.awt.Transparency;
+import cowlite.deepswing.overlay.util.OverlayMetrics;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -24,7 +28,8 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.EventListener;
 
 /**
@@ -45,6 +50,12 @@ import java.util.EventListener;
  * make sure that the border and background get painted and that the correct
  * clip gets set for the <code>Graphics</code> object.
  * 
+ * <h2>Caching</h2>
+ * Containers paint their children with <code>paint(Graphics)</code>. If caching has been
+ * enabled for a component then the component and all of it's children are painted
+ * once into an image, which is drawn on the overlay until the component gets repainted.
+ * This is useful for components and panels that rarely change.
+ * 
  * @author Wessel Jongkind
  */
 public class OverlayComponent implements MouseListener, MouseMotionListener, MouseWheelListener, KeyListener
@@ -114,6 +125,17 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
      */
     private boolean focussed = false;
     
+    /**
+     * True if this component is fine with receiving only the last mouse motion
+     * event of every frame, which it is by default.
+     */
+    private boolean motionCoalescing = true;
+    
+    /**
+     * True if this component can be focussed with the keyboard, by pressing tab.
+     */
+    private boolean focusTraversable = false;
+    
     /**
      * The color of the foreground color of the component. Usually the foreground
      * are things such as text or the filling of a slider.
@@ -155,10 +177,56 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
      */
     public static final Color INVISIBLE = new Color(0.0f, 0.0f, 0.0f, 0.0f);
     
-    private final ArrayList<EventListener> listeners = new ArrayList<>();
+    private static final MouseListener[] NO_MOUSE_LISTENERS = new MouseListener[0];
+    
+    private static final MouseMotionListener[] NO_MOUSE_MOTION_LISTENERS = new MouseMotionListener[0];
+    
+    private static final MouseWheelListener[] NO_MOUSE_WHEEL_LISTENERS = new MouseWheelListener[0];
+    
+    private static final KeyListener[] NO_KEY_LISTENERS = new KeyListener[0];
+    
+    /**
+     * The listeners of this component, one array per type of listener. The arrays
+     * are never modified; adding or removing a listener replaces the array with a
+     * new one. Events can therefore be dispatched by simply looping over the array,
+     * even if a listener adds or removes listeners while the event is being dispatched.
+     * A listener is in every array of which it implements the type, at most once.
+     */
+    private volatile MouseListener[] mouseListeners = NO_MOUSE_LISTENERS;
+    
+    private volatile MouseMotionListener[] mouseMotionListeners = NO_MOUSE_MOTION_LISTENERS;
+    
+    private volatile MouseWheelListener[] mouseWheelListeners = NO_MOUSE_WHEEL_LISTENERS;
+    
+    private volatile KeyListener[] keyListeners = NO_KEY_LISTENERS;
     
     private boolean relativeSizing = false, relativePositioning = false;
     
+    /**
+     * The container to which this component has been added. It gets notified
+     * whenever an area of this component has to be repainted. If the component
+     * has not been added to a container yet then it is null.
+     */
+    private OverlayContainer container;
+    
+    /**
+     * True if the component should be painted into <code>layer</code> and
+     * drawn from there, false if it should be painted directly.
+     */
+    private boolean cached = false;
+    
+    /**
+     * The image into which the component is painted when caching is enabled.
+     * It is null if caching is disabled or nothing has been painted yet.
+     */
+    private BufferedImage layer;
+    
+    /**
+     * True if <code>layer</code> still shows how the component currently looks.
+     * It becomes false whenever a repaint of the component is requested.
+     */
+    private boolean layerValid = false;
+    
     /**
      * Default painting of this overlay component. Call for this method (generally
      * super.paintComponent(g);) to draw a correct background and border.
@@ -177,6 +245,78 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
         
     }
     
+    /**
+     * Paints the component. This is the method that containers call to paint
+     * their children. If caching is disabled then it simply calls
+     * <code>paintComponent(Graphics)</code>. If caching is enabled then the
+     * component is only painted again if it has been changed since the last time
+     * it was painted, otherwise the previously painted image is drawn.
+     * @see #setCached(boolean) 
+     * @param g Graphics to be painting with.
+     */
+    public void paint(Graphics g)
+    {
+        long start = OverlayMetrics.isRecording() ? System.nanoTime() : 0;
+        
+        if(!cached || getWidth() <= 0 || getHeight() <= 0)
+            paintComponent(g);
+        else
+            paintCached((Graphics2D) g);
+        
+        if(start != 0)
+            OverlayMetrics.recordComponentPaint(getClass(), System.nanoTime() - start);
+    }
+    
+    /**
+     * Draws the cached image of the component, after painting the component into
+     * it if it is outdated.
+     * @param g2 The graphics to be painting with.
+     */
+    private void paintCached(Graphics2D g2)
+    {
+        if(!layerValid || layer == null || layer.getWidth() != getWidth() || layer.getHeight() != getHeight())
+            renderLayer(g2);
+        
+        Rectangle bounds = getOverlayBounds();
+        g2.clipRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g2.drawImage(layer, bounds.x, bounds.y, null);
+    }
+    
+    /**
+     * Paints the component into <code>layer</code>. The image is created with
+     * the configuration of the device that is being painted on so that drawing
+     * it is as fast as possible. 
+     * @param g2 The graphics object that the layer will be drawn with.
+     */
+    private void renderLayer(Graphics2D g2)
+    {
+        Rectangle bounds = getOverlayBounds();
+        
+        if(layer == null || layer.getWidth() != bounds.width || layer.getHeight() != bounds.height)
+        {
+            GraphicsConfiguration configuration = g2.getDeviceConfiguration();
+            if(configuration != null)
+                layer = configuration.createCompatibleImage(bounds.width, bounds.height, Transparency.TRANSLUCENT);
+            else
+                layer = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        }
+        
+        Graphics2D lg = layer.createGraphics();
+        lg.setComposite(AlphaComposite.Clear);
+        lg.fillRect(0, 0, bounds.width, bounds.height);
+        lg.setComposite(AlphaComposite.SrcOver);
+        lg.setRenderingHints(g2.getRenderingHints());
+        
+        //The component paints itself relative to the overlay's origin.
+        lg.translate(-bounds.x, -bounds.y);
+        lg.setClip(bounds);
+        
+        //Repaints that are requested while painting invalidate the layer again.
+        layerValid = true;
+        paintComponent(lg);
+        lg.dispose();
+    }
+    
     /**
      * Draws the background of the component. The background is the area between
      * the borders of the component.
@@ -280,11 +420,15 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
         if(height < getMinimumHeight())
             height = getMinimumHeight();
         
+        Rectangle previous = getOverlayBounds();
+        
         this.width = width;
         this.height = height;
         //if(this instanceof OverlayButton)
             //System.out.println("setting " + width + "   " + height);
         sizeSet = true;
+        
+        repaintChange(previous);
     }
     
     public void setMinimumSize(Dimension size)
@@ -294,6 +438,8 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     
     public void setMinimumSize(int width, int height)
     {
+        Rectangle previous = getOverlayBounds();
+        
         this.minimumWidth = width;
         this.minimumHeight = height;
         
@@ -301,6 +447,8 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
             this.width = width;
         if(this.height < height)
             this.height = height;
+        
+        repaintChange(previous);
     }
     
     public void setMaximumSize(Dimension size)
@@ -310,12 +458,16 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     
     public void setMaximumSize(int width, int height)
     {
+        Rectangle previous = getOverlayBounds();
+        
         this.maximumWidth = width;
         this.maximumHeight = height;
         if(this.width > width)
             this.width = width;
         if(this.height > height)
             this.height = height;
+        
+        repaintChange(previous);
     }
     
     /**
@@ -331,8 +483,12 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
      */
     public void setLocation(int x, int y)
     {
+        Rectangle previous = getOverlayBounds();
+        
         this.x = x;
         this.y = y;
+        
+        repaintChange(previous);
     }
     
     /**
@@ -366,6 +522,7 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     public void setForeground(Color c)
     {
         this.foreground = c;
+        repaint();
     }
     
     /**
@@ -377,6 +534,7 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     public void setBackground(Color c)
     {
         this.background = c;
+        repaint();
     }
     
     /**
@@ -392,6 +550,7 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     public void setBorder(Color c)
     {
         this.border = c;
+        repaint();
     }
     
     /**
@@ -403,6 +562,7 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     public void setBorderWidth(int width)
     {
         this.borderWidth = width;
+        repaint();
     }
     
     /**
@@ -460,7 +620,157 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
      */
     public void setFocussed(boolean focussed)
     {
+        if(this.focussed == focussed)
+            return;
+        
         this.focussed = focussed;
+        repaint();
+        
+        if(container != null)
+            container.focusChanged(this);
+    }
+    
+    /**
+     * Sets wether this component only needs the last mouse motion event of every
+     * frame. By default mouse movements that happen between two frames are combined
+     * into a single event, which is dispatched through the component tree once.
+     * Components that need every single movement of the mouse, such as a surface
+     * that is drawn on, should disable this. While the mouse is above such a
+     * component or while it contains focus, every motion event is dispatched.
+     * @param coalescing True if only the last motion event of every frame is needed, otherwise false.
+     */
+    public void setMotionCoalescing(boolean coalescing)
+    {
+        if(this.motionCoalescing == coalescing)
+            return;
+        
+        this.motionCoalescing = coalescing;
+        
+        if(container != null)
+            container.motionCoalescingChanged(this);
+    }
+    
+    public boolean isMotionCoalescing()
+    {
+        return motionCoalescing;
+    }
+    
+    /**
+     * Tells wether this component or any of it's descendants needs every mouse
+     * motion event rather than only the last one of every frame.
+     * @see #setMotionCoalescing(boolean) 
+     * @return True if the component or one of it's descendants has disabled motion coalescing, otherwise false.
+     */
+    public boolean needsEveryMotion()
+    {
+        return !motionCoalescing;
+    }
+    
+    /**
+     * Sets the container to which this component has been added. This method
+     * is called by containers such as <code>OverlayPanel</code> when the component
+     * gets added to or removed from them. It is not recommended that you call this
+     * method yourself unless you are creating a new type of container.
+     * @see #getContainer()
+     * @param container The container of the component, or null if the component has been removed.
+     */
+    public void setContainer(OverlayContainer container)
+    {
+        this.container = container;
+    }
+    
+    /**
+     * Enables or disables caching of the component. When caching is enabled
+     * the component (including all of it's children) is painted into an image
+     * once, and that image is drawn until the component gets repainted. Enable
+     * this for components that rarely change, as every change requires the whole
+     * component to be painted into the image again.
+     * @see #paint(java.awt.Graphics) 
+     * @param cached True if the component should be cached, otherwise false.
+     */
+    public void setCached(boolean cached)
+    {
+        this.cached = cached;
+        if(!cached)
+            layer = null;
+        invalidateLayer();
+    }
+    
+    /**
+     * Marks the cached image of this component as outdated, so that the component
+     * is painted again the next time it gets drawn. Containers call this when one
+     * of their children changes.
+     * @see #setCached(boolean) 
+     */
+    protected void invalidateLayer()
+    {
+        layerValid = false;
+    }
+    
+    /**
+     * Requests a repaint of the whole area of this component. Only the area of
+     * the component will be repainted, the rest of the overlay stays untouched.
+     * Components should call this method whenever something changes that affects
+     * the way they look.
+     * @see #repaint(java.awt.Rectangle) 
+     */
+    public void repaint()
+    {
+        repaint(getOverlayBounds());
+    }
+    
+    /**
+     * Requests a repaint of the given area. The request is passed on to the container
+     * of this component, which passes it on to the root of the overlay. Nothing happens
+     * if the component has not been added to a container yet.
+     * @see #repaint() 
+     * @param area The area to be repainted, relative to the overlay's origin.
+     */
+    public void repaint(Rectangle area)
+    {
+        invalidateLayer();
+        notifyContainer(area);
+    }
+    
+    /**
+     * Passes a repaint request on to the container of this component.
+     * @param area The area to be repainted, relative to the overlay's origin.
+     */
+    private void notifyContainer(Rectangle area)
+    {
+        if(container == null || area.isEmpty())
+            return;
+        
+        //Antialiased borders can bleed one pixel outside of the component.
+        Rectangle damage = new Rectangle(area);
+        damage.grow(1, 1);
+        container.repaintRequested(this, damage);
+    }
+    
+    /**
+     * Repaints both the area that the component previously occupied and the area
+     * that it occupies now, but only if they differ. If the component has only
+     * been moved then it's cached image can still be used.
+     * @param previous The area that the component occupied before it changed.
+     */
+    private void repaintChange(Rectangle previous)
+    {
+        Rectangle current = getOverlayBounds();
+        if(current.equals(previous))
+            return;
+        
+        if(container != null)
+            container.boundsChanged(this);
+        
+        if(!current.getSize().equals(previous.getSize()))
+            invalidateLayer();
+        
+        if(previous.isEmpty())
+            notifyContainer(current);
+        else if(current.isEmpty())
+            notifyContainer(previous);
+        else
+            notifyContainer(previous.union(current));
     }
     
     /**
@@ -473,29 +783,169 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
         this.automaticResizing = isAllowed;
     }
 
+    /**
+     * Adds a listener that gets notified of mouse clicks, presses and releases
+     * while the component is focussed.
+     * If the listener also listens to other events of the component then it is
+     * added for those as well.
+     * @param listener The listener to be added.
+     */
     public void addMouseListener(MouseListener listener)
     {
-        this.addListener(listener);
+        addListener(listener);
+    }
+    
+    public void removeMouseListener(MouseListener listener)
+    {
+        removeListener(listener);
+    }
+    
+    public MouseListener[] getMouseListeners()
+    {
+        return mouseListeners.clone();
     }
 
+    /**
+     * Adds a listener that gets notified of mouse movement while the component
+     * is focussed.
+     * If the listener also listens to other events of the component then it is
+     * added for those as well.
+     * @param listener The listener to be added.
+     */
     public void addMouseMotionListener(MouseMotionListener listener)
     {
-        this.addListener(listener);
+        addListener(listener);
+    }
+    
+    public void removeMouseMotionListener(MouseMotionListener listener)
+    {
+        removeListener(listener);
+    }
+    
+    public MouseMotionListener[] getMouseMotionListeners()
+    {
+        return mouseMotionListeners.clone();
     }
 
+    /**
+     * Adds a listener that gets notified of the mouse wheel while the component
+     * is focussed.
+     * If the listener also listens to other events of the component then it is
+     * added for those as well.
+     * @param listener The listener to be added.
+     */
     public void addMouseWheelListener(MouseWheelListener listener)
     {
-        this.addListener(listener);
+        addListener(listener);
+    }
+    
+    public void removeMouseWheelListener(MouseWheelListener listener)
+    {
+        removeListener(listener);
+    }
+    
+    public MouseWheelListener[] getMouseWheelListeners()
+    {
+        return mouseWheelListeners.clone();
     }
     
+    /**
+     * Adds a listener that gets notified of key events while the component
+     * is focussed.
+     * If the listener also listens to other events of the component then it is
+     * added for those as well.
+     * @param listener The listener to be added.
+     */
     public void addKeyListener(KeyListener listener)
     {
-        this.addListener(listener);
+        addListener(listener);
     }
     
-    private void addListener(EventListener listener)
+    public void removeKeyListener(KeyListener listener)
     {
-        listeners.add(listener);
+        removeListener(listener);
+    }
+    
+    public KeyListener[] getKeyListeners()
+    {
+        return keyListeners.clone();
+    }
+    
+    /**
+     * Adds the listener for every type of event it listens to, no matter with
+     * which of the add-methods it has been added. A listener that implements both
+     * <code>MouseListener</code> and <code>MouseMotionListener</code>, such as a
+     * <code>ComponentManager</code>, therefore receives presses and releases as
+     * well as drags after a single call. A listener that has already been added
+     * for a type is not added for it again.
+     * @param listener The listener to be added.
+     */
+    private synchronized void addListener(EventListener listener)
+    {
+        if(listener instanceof MouseListener)
+            mouseListeners = add(mouseListeners, (MouseListener) listener);
+        if(listener instanceof MouseMotionListener)
+            mouseMotionListeners = add(mouseMotionListeners, (MouseMotionListener) listener);
+        if(listener instanceof MouseWheelListener)
+            mouseWheelListeners = add(mouseWheelListeners, (MouseWheelListener) listener);
+        if(listener instanceof KeyListener)
+            keyListeners = add(keyListeners, (KeyListener) listener);
+    }
+    
+    /**
+     * Removes the listener for every type of event it listens to.
+     * @param listener The listener to be removed.
+     */
+    private synchronized void removeListener(EventListener listener)
+    {
+        if(listener instanceof MouseListener)
+            mouseListeners = remove(mouseListeners, (MouseListener) listener);
+        if(listener instanceof MouseMotionListener)
+            mouseMotionListeners = remove(mouseMotionListeners, (MouseMotionListener) listener);
+        if(listener instanceof MouseWheelListener)
+            mouseWheelListeners = remove(mouseWheelListeners, (MouseWheelListener) listener);
+        if(listener instanceof KeyListener)
+            keyListeners = remove(keyListeners, (KeyListener) listener);
+    }
+    
+    /**
+     * Returns a copy of the array with the listener added to the end of it. If the
+     * listener is already in the array then the array itself is returned.
+     * @param listeners The current listeners.
+     * @param listener The listener to be added.
+     * @return The new array of listeners.
+     */
+    private static <T extends EventListener> T[] add(T[] listeners, T listener)
+    {
+        for(T l : listeners)
+            if(l == listener)
+                return listeners;
+        
+        T[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        return copy;
+    }
+    
+    /**
+     * Returns a copy of the array without the listener.
+     * If the listener is not in the array then the array itself is returned.
+     * @param listeners The current listeners.
+     * @param listener The listener to be removed.
+     * @return The new array of listeners.
+     */
+    private static <T extends EventListener> T[] remove(T[] listeners, T listener)
+    {
+        for(int i = listeners.length - 1; i >= 0; i--)
+        {
+            if(listeners[i] == listener)
+            {
+                T[] copy = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+                return copy;
+            }
+        }
+        
+        return listeners;
     }
     
     /**
@@ -598,6 +1048,38 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
         return maximumHeight;
     }
     
+    /**
+     * Returns the container to which this component has been added.
+     * @see #setContainer(cowlite.deepswing.overlay.components.OverlayContainer) 
+     * @return The container of this component, or null if it has not been added to one.
+     */
+    public OverlayContainer getContainer()
+    {
+        return container;
+    }
+    
+    /**
+     * Tells wether or not the component is cached.
+     * @see #setCached(boolean) 
+     * @return True if the component is cached, otherwise false.
+     */
+    public boolean isCached()
+    {
+        return cached;
+    }
+    
+    /**
+     * Returns the area that the component occupies, including border, relative
+     * to the overlay's origin. This is the area that gets repainted when the
+     * component changes.
+     * @see #repaint() 
+     * @return The area of the component relative to the overlay's origin.
+     */
+    public Rectangle getOverlayBounds()
+    {
+        return new Rectangle(getOffsetX() + getX(), getOffsetY() + getY(), getWidth(), getHeight());
+    }
+    
     /**
      * Returns the location of the  component relative to it's parent.
      * If you want to get the location of the content area of the  component relative
@@ -796,6 +1278,81 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
         return this.focussed;
     }
     
+    /**
+     * Tells wether the content area of this component (the area within the border)
+     * is completely opaque once it has been painted. Containers do not paint the
+     * components below an opaque component if they are completely covered by it.
+     * <br>
+     * By default a component is opaque if both it's background and foreground are
+     * opaque. The foreground has to be opaque as well because components such as
+     * labels and sliders paint their foreground with <code>AlphaComposite.Src</code>,
+     * which replaces the background rather than painting on top of it. Components
+     * that paint translucent pixels in any other way should override this method.
+     * <br>
+     * This is only true if the background is painted by <code>paintComponent</code>
+     * of this class, over the whole content area. Subclasses that do not call
+     * <code>super.paintComponent</code>, or that paint the background transformed
+     * or in another shape, must override this method as well.
+     * @see #getOpaqueBounds()
+     * @return True if the content area of the component is completely opaque, otherwise false.
+     */
+    public boolean isOpaque()
+    {
+        return getBackground().getAlpha() == 255 && getForeground().getAlpha() == 255;
+    }
+    
+    /**
+     * Returns the area that this component covers completely when it is opaque,
+     * which is the area within the border.
+     * @see #isOpaque()
+     * @return The content area of the component, relative to the overlay's origin.
+     */
+    public Rectangle getOpaqueBounds()
+    {
+        return new Rectangle(getCorrectedX(), getCorrectedY(), getCorrectedWidth(), getCorrectedHeight());
+    }
+    
+    /**
+     * Tells wether this component or any of it's descendants is focussed. Containers
+     * keep passing mouse events to children that contain focus, even when the mouse
+     * is not above them, so that they can for example lose focus when the mouse
+     * is pressed somewhere else.
+     * @return True if the component or one of it's descendants is focussed, otherwise false.
+     */
+    public boolean containsFocus()
+    {
+        return isFocussed();
+    }
+    
+    /**
+     * Returns the component that key events should go to: the focussed component
+     * that lies deepest in the component tree below this component. If several
+     * children contain focus then the topmost child is chosen.
+     * @return The focussed component, which may be this component itself, or null
+     *         if neither this component nor any of it's descendants is focussed.
+     */
+    public OverlayComponent getFocusOwner()
+    {
+        return isFocussed() ? this : null;
+    }
+    
+    /**
+     * Sets wether this component can be focussed with the keyboard. When tab is
+     * pressed on the overlay, focus moves to the next component that is focus
+     * traversable, in the order in which the components are painted. By default
+     * only text fields are focus traversable.
+     * @param focusTraversable True if the component can be focussed with the keyboard, otherwise false.
+     */
+    public void setFocusTraversable(boolean focusTraversable)
+    {
+        this.focusTraversable = focusTraversable;
+    }
+    
+    public boolean isFocusTraversable()
+    {
+        return focusTraversable;
+    }
+    
     /**
      * This method returns the point of the mouse-cursor relative to it's
      * corrected location. If the mouse-cursor is not over the component
@@ -861,111 +1418,111 @@ public class OverlayComponent implements MouseListener, MouseMotionListener, Mou
     @Override
     public void mouseClicked(MouseEvent e)
     {
-        if(!isFocussed())
+        MouseListener[] listeners = mouseListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseListener)
-                ((MouseListener)l).mouseClicked(e);
+        for(MouseListener l : listeners)
+            l.mouseClicked(e);
     }
 
     @Override
     public void mousePressed(MouseEvent e)
     {
         this.setFocussed(confirmHit(e));
-        if(!isFocussed())
+        MouseListener[] listeners = mouseListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseListener)
-                ((MouseListener)l).mousePressed(e);
+        for(MouseListener l : listeners)
+            l.mousePressed(e);
     }
 
     @Override
     public void mouseReleased(MouseEvent e)
     {
-        if(!isFocussed())
+        MouseListener[] listeners = mouseListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseListener)
-                ((MouseListener)l).mouseReleased(e);
+        for(MouseListener l : listeners)
+            l.mouseReleased(e);
     }
 
     @Override
     public void mouseEntered(MouseEvent e)
     {
-        if(!isFocussed())
+        MouseListener[] listeners = mouseListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseListener)
-                ((MouseListener)l).mouseEntered(e);
+        for(MouseListener l : listeners)
+            l.mouseEntered(e);
     }
 
     @Override
     public void mouseExited(MouseEvent e)
     {
-        if(!isFocussed())
+        MouseListener[] listeners = mouseListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseListener)
-                ((MouseListener)l).mouseExited(e);
+        for(MouseListener l : listeners)
+            l.mouseExited(e);
     }
 
     @Override
     public void mouseDragged(MouseEvent e)
     {
-        if(!isFocussed())
+        MouseMotionListener[] listeners = mouseMotionListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseMotionListener)
-                ((MouseMotionListener)l).mouseDragged(e);
+        for(MouseMotionListener l : listeners)
+            l.mouseDragged(e);
     }
 
     @Override
     public void mouseMoved(MouseEvent e)
     {
-        if(!isFocussed())
+        MouseMotionListener[] listeners = mouseMotionListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseMotionListener)
-                ((MouseMotionListener)l).mouseMoved(e);
+        for(MouseMotionListener l : listeners)
+            l.mouseMoved(e);
     }
 
     @Override
     public void mouseWheelMoved(MouseWheelEvent e)
     {
-        if(!isFocussed())
+        MouseWheelListener[] listeners = mouseWheelListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof MouseWheelListener)
-                ((MouseWheelListener)l).mouseWheelMoved(e);
+        for(MouseWheelListener l : listeners)
+            l.mouseWheelMoved(e);
     }
 
     @Override
     public void keyTyped(KeyEvent e)
     {
-        if(!isFocussed())
+        KeyListener[] listeners = keyListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof KeyListener)
-                ((KeyListener)l).keyTyped(e);
+        for(KeyListener l : listeners)
+            l.keyTyped(e);
     }
 
     @Override
     public void keyPressed(KeyEvent e)
     {
-        if(!isFocussed())
+        KeyListener[] listeners = keyListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof KeyListener)
-                ((KeyListener)l).keyPressed(e);
+        for(KeyListener l : listeners)
+            l.keyPressed(e);
     }
 
     @Override
     public void keyReleased(KeyEvent e)
     {
-        if(!isFocussed())
+        KeyListener[] listeners = keyListeners;
+        if(listeners.length == 0 || !isFocussed())
             return;
-        for(EventListener l : listeners)
-            if(l instanceof KeyListener)
-                ((KeyListener)l).keyReleased(e);
+        for(KeyListener l : listeners)
+            l.keyReleased(e);
     }
 }
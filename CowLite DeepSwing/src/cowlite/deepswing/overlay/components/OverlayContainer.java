@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.components;
+
+import java.awt.Rectangle;
+
+/**
+ * This interface is implemented by everything that can hold <code>OverlayComponent</code>s,
+ * such as <code>OverlayPanel</code> and the root container of the overlay. A container
+ * gets notified by it's children whenever a part of them has to be repainted.
+ *
+ * <h2>Repainting</h2>
+ * Components report the area that has changed (the damaged area) to their container.
+ * Containers pass the area on to their own container until it reaches the root of the
+ * overlay. The root collects all damaged areas and only repaints the union of those
+ * areas instead of the whole overlay.
+ *
+ * <h2>Mouse events</h2>
+ * Containers keep track of where their children are, so that mouse events are
+ * only passed on to the children below the mouse and to the children that
+ * contain focus. Children report changes to their location, size and focus so
+ * that the container can keep this information up to date.
+ *
+ * <h2>Mouse motion</h2>
+ * The root of the overlay combines all mouse movements between two frames into a
+ * single event. Containers keep track of which children need every movement, so
+ * that the root knows when it should not combine them.
+ *
+ * @author Wessel Jongkind
+ */
+public interface OverlayContainer
+{
+    /**
+     * Notifies the container that an area of one of it's children has to be repainted.
+     * @param source The component that requested the repaint.
+     * @param area The area that has to be repainted, relative to the overlay's origin.
+     */
+    public void repaintRequested(OverlayComponent source, Rectangle area);
+    
+    /**
+     * Notifies the container that the location or size of one of it's children
+     * has changed.
+     * @param source The component that has been moved or resized.
+     */
+    public void boundsChanged(OverlayComponent source);
+    
+    /**
+     * Notifies the container that one of it's children has gained or lost focus,
+     * or that a child container has gained or lost a focussed descendant.
+     * @see OverlayComponent#containsFocus()
+     * @param source The component of which the focus has changed.
+     */
+    public void focusChanged(OverlayComponent source);
+    
+    /**
+     * Notifies the container that one of it's children has enabled or disabled
+     * mouse motion coalescing, or that a child container has gained or lost a
+     * descendant that needs every motion event.
+     * @see OverlayComponent#needsEveryMotion()
+     * @param source The component of which the motion coalescing has changed.
+     */
+    public void motionCoalescingChanged(OverlayComponent source);
+    
+    /**
+     * Tells wether the container is owned by the event dispatch thread, which
+     * means that it is painted and receives it's input there. Panels only lay out
+     * their children in the background while they are, since the solved layouts
+     * are applied on the event dispatch thread. Containers that are used on
+     * another thread, such as an <code>OffscreenOverlay</code>, are not.
+     * @return True if the container is owned by the event dispatch thread, otherwise false.
+     */
+    public default boolean isOwnedByEventDispatchThread()
+    {
+        return false;
+    }
+}
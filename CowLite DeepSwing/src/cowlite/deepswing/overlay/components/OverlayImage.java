@@ -88,7 +88,7 @@ public class OverlayImage extends OverlayComponent
         
         AffineTransform originalTx = g2.getTransform();
         AffineTransform tx = AffineTransform.getRotateInstance(Math.toRadians(rotation), getWidth() / 2, getWidth() / 2);
-        g2.setTransform(tx);
+        g2.transform(tx);
         
         super.paintComponent(g);
         
@@ -125,6 +125,7 @@ public class OverlayImage extends OverlayComponent
     public void setTransparency(float alpha)
     {
         this.alpha = alpha;
+        repaint();
     }
     
     /**
@@ -135,11 +136,25 @@ public class OverlayImage extends OverlayComponent
     public void setRotation(int degrees)
     {
         this.rotation = degrees;
+        repaint();
+    }
+    
+    /**
+     * Tells wether the content area of the image is completely opaque. A rotated
+     * image paints it's background rotated as well, which leaves the corners of
+     * the content area uncovered, so it is never opaque.
+     * @return True if the image is not rotated and it's background and foreground are opaque, otherwise false.
+     */
+    @Override
+    public boolean isOpaque()
+    {
+        return rotation % 360 == 0 && super.isOpaque();
     }
     
     public void maintainAspectRatio(boolean maintain)
     {
         this.maintainRatio = maintain;
+        repaint();
     }
     
     public BufferedImage getImage()
@@ -13,6 +13,9 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.text.Bidi;
 
 /**
  * This class allows simple text to be added to the overlay. A <code>OverlayLabel</code>
@@ -26,6 +29,13 @@ import java.awt.Graphics2D;
  * Sizing the component smaller than the space that the text requires will cause
  * the text to not be fully visible.
  * 
+ * <h2>Text layout</h2>
+ * The text is measured and converted to glyphs once, and both are kept until the
+ * text, the font or the way text is rendered changes. Labels that do not change
+ * between frames therefore only draw their glyphs, without measuring anything.
+ * Text that needs complex layout, such as right-to-left text, is drawn as a
+ * string instead of as glyphs.
+ * 
  * @author Wessel Jongkind
  */
 public class OverlayLabel extends OverlayComponent
@@ -51,6 +61,29 @@ public class OverlayLabel extends OverlayComponent
     
     private int lastKnownWidth = 0;
     
+    /**
+     * The glyphs of the text, or null if the text has to be measured again. If the
+     * text needs complex layout then no glyphs are kept and the text is drawn as
+     * a string.
+     */
+    private GlyphVector glyphs;
+    
+    /**
+     * True if the text, font and render context have been measured since they last changed.
+     */
+    private boolean measured = false;
+    
+    /**
+     * The render context with which the text has been measured.
+     */
+    private FontRenderContext measuredContext;
+    
+    private int textWidth;
+    
+    private int textHeight;
+    
+    private int textAscent;
+    
     /**
      * Constructs a new <code>OverlayLabel</code> with no text. It will be invisible untill
      * a new text has been set for the first time.
@@ -116,9 +149,12 @@ public class OverlayLabel extends OverlayComponent
         g2.setColor(getForeground());
         
         positionLabel(g2);
-        g2.drawString(text, getCorrectedX() + horizontalOffset, getCorrectedY() + verticalOffset);
+        if(glyphs != null)
+            g2.drawGlyphVector(glyphs, getCorrectedX() + horizontalOffset, getCorrectedY() + verticalOffset);
+        else
+            g2.drawString(text, getCorrectedX() + horizontalOffset, getCorrectedY() + verticalOffset);
         
-        lastKnownWidth = getStringWidth(g2);
+        lastKnownWidth = textWidth;
         
         g2.setComposite(composite);
     }
@@ -131,12 +167,85 @@ public class OverlayLabel extends OverlayComponent
      */
     private void positionLabel(Graphics2D g2)
     {
-        FontMetrics metrics = g2.getFontMetrics(font);
+        measure(g2);
+        
         int middle = getCorrectedWidth() / 2;
-        horizontalOffset = middle - getStringWidth(g2) / 2;
+        horizontalOffset = middle - textWidth / 2;
         
         middle = getCorrectedHeight() / 2;
-        verticalOffset = middle - getStringHeight(g2) / 2 + metrics.getAscent();
+        verticalOffset = middle - textHeight / 2 + textAscent;
+    }
+    
+    /**
+     * Measures the text and converts it to glyphs, unless this has already been
+     * done for the current text, font and render context of the graphics object.
+     * @param g2 The graphics object with which the text will be painted.
+     */
+    private void measure(Graphics2D g2)
+    {
+        FontRenderContext context = g2.getFontRenderContext();
+        if(measured && context.equals(measuredContext))
+            return;
+        
+        FontMetrics metrics = g2.getFontMetrics(font);
+        textWidth = metrics.stringWidth(text);
+        textHeight = metrics.getHeight();
+        textAscent = metrics.getAscent();
+        
+        char[] chars = text.toCharArray();
+        if(requiresLayout(chars))
+            glyphs = null;
+        else
+            glyphs = font.createGlyphVector(context, chars);
+        
+        measuredContext = context;
+        measured = true;
+    }
+    
+    /**
+     * Tells wether text needs complex layout, so that it can not be drawn as a
+     * <code>GlyphVector</code> of it's characters one after another. This is the
+     * case for text that contains right-to-left characters or characters of a script
+     * that is shaped, such as Arabic, Indic, Thai or combining diacritical marks.
+     * @param chars The characters of the text.
+     * @return True if the text should be drawn as a string, otherwise false.
+     */
+    private static boolean requiresLayout(char[] chars)
+    {
+        for(char c : chars)
+            if(isComplex(c))
+                return true;
+        return Bidi.requiresBidi(chars, 0, chars.length);
+    }
+    
+    /**
+     * Tells wether a character belongs to a range of which the characters are
+     * shaped or reordered when they are drawn. These are the same ranges for which
+     * Java itself lays out text.
+     * @param c The character.
+     * @return True if the character needs complex layout, otherwise false.
+     */
+    private static boolean isComplex(char c)
+    {
+        return (c >= 0x0300 && c <= 0x036f)     //Combining diacritical marks
+            || (c >= 0x0590 && c <= 0x06ff)     //Hebrew and Arabic
+            || (c >= 0x0900 && c <= 0x0e7f)     //Indic scripts and Thai
+            || (c >= 0x0f00 && c <= 0x0fff)     //Tibetan
+            || (c >= 0x1100 && c <= 0x11ff)     //Hangul Jamo
+            || (c >= 0x1780 && c <= 0x17ff)     //Khmer
+            || (c >= 0x200c && c <= 0x200d)     //Zero width joiners
+            || (c >= 0x202a && c <= 0x202e)     //Directional formatting
+            || (c >= 0x206a && c <= 0x206f);
+    }
+    
+    /**
+     * Makes sure that the text gets measured again before it is painted.
+     */
+    private void invalidateMeasurement()
+    {
+        measured = false;
+        glyphs = null;
+        measuredContext = null;
     }
     
     /**
@@ -147,7 +256,9 @@ public class OverlayLabel extends OverlayComponent
     public void setText(String text)
     {
         this.text = text;
+        invalidateMeasurement();
         super.notifyChange();
+        repaint();
     }
     
     /**
@@ -159,7 +270,9 @@ public class OverlayLabel extends OverlayComponent
     public void setFont(Font font)
     {
         this.font = font;
+        invalidateMeasurement();
         super.notifyChange();
+        repaint();
     }
     
     /**
@@ -170,7 +283,9 @@ public class OverlayLabel extends OverlayComponent
     public void setFontSize(int size)
     {
         this.font = new Font(this.font.getFontName(), this.font.getStyle(), size);
+        invalidateMeasurement();
         super.notifyChange();
+        repaint();
     }
     
     /**
@@ -199,8 +314,8 @@ public class OverlayLabel extends OverlayComponent
      */
     public int getStringWidth(Graphics2D g2)
     {
-        int size = g2.getFontMetrics(font).stringWidth(text);
-        return size;
+        measure(g2);
+        return textWidth;
     }
     
     /**
@@ -211,8 +326,8 @@ public class OverlayLabel extends OverlayComponent
      */
     public int getStringHeight(Graphics2D g2)
     {
-        int size = g2.getFontMetrics(font).getHeight();
-        return size;
+        measure(g2);
+        return textHeight;
     }
     
     public int getLastKnownWidth()
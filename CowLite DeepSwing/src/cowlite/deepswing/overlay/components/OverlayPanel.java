@@ -8,32 +8,87 @@
 package cowlite.deepswing.overlay.components;
 
 import cowlite.deepswing.overlay.components.layout.GridBagLayout;
+import cowlite.deepswing.overlay.components.layout.LayoutInput;
+import cowlite.deepswing.overlay.components.layout.LayoutSnapshot;
 import java.awt.Composite;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Shape;
-import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
-import java.awt.event.MouseWheelListener;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import cowlite.deepswing.overlay.util.OcclusionCuller;
 import cowlite.deepswing.overlay.util.OverlayConstraints;
+import cowlite.deepswing.overlay.util.SpatialIndex;
 
 /**
  * This is a container class to which other <code>OverlayComponent</code>s can be added.
  * 
  * <h2>Painting</h2>
  * Components that have been added first will be drawn below more recently added components.
- * Currently indexed placement of components is not yet supported. 
+ * Currently indexed placement of components is not yet supported. Children
+ * that lie outside of the painted area, or that are covered by an opaque child
+ * painted after them, are not painted at all.
+ * 
+ * <h2>Repainting</h2>
+ * Repaint requests of children are passed on to the container of the panel. The
+ * requested area is limited to the area of the panel, as children are never painted
+ * outside of it. If the panel is cached then any change of a child causes the panel
+ * to be painted into it's cache again.
+ * 
+ * <h2>Mouse events</h2>
+ * Mouse events are only passed on to the children below the mouse, topmost child
+ * first, and to the children that contain focus. The panel keeps a <code>SpatialIndex</code>
+ * of it's children to find the children below the mouse, so the cost of a mouse event
+ * does not grow with the amount of children.
+ * 
+ * <h2>Constraints</h2>
+ * If component constraints are used then the children are laid out by a
+ * <code>GridBagLayout</code>. Adding or removing children, changing constraints
+ * and resizing the panel do not lay out the children right away; the layout is
+ * only marked as outdated and is done once, right before the panel is painted
+ * or receives a mouse event. Adding many children in a row therefore costs a
+ * single layout pass. Call <code>validateLayout()</code> to lay out the children
+ * earlier, for example to read their bounds.
+ * 
+ * <h2>Background layout</h2>
+ * After the first layout of the panel, the grid is solved on a background thread
+ * that is shared by all panels. Right before the panel is painted the constraints
+ * and the minimum and maximum sizes of the children are copied, which is cheap,
+ * and the copy is solved on the background thread into an immutable snapshot of
+ * the bounds of the children. The snapshot is handed to the event dispatch thread,
+ * which applies it and then requests a repaint, so the next frame shows the new
+ * layout. A heavy layout therefore does not hold up the frame that asked for it;
+ * that frame shows the previous layout instead. Only one pass per panel is solved
+ * at a time; if the layout changes again while it is being solved then it's
+ * snapshot is still applied, and the next pass is requested right after.
+ * <code>validateLayout()</code> always lays out the children right away, on the
+ * calling thread. Background layout can be disabled with <code>setAsynchronousLayout(false)</code>.
+ * <br>
+ * The background thread never touches the children. They are only moved on the
+ * event dispatch thread, which also paints the overlay and dispatches it's input,
+ * including when the overlay is actively rendered. Background layout is therefore
+ * only used while the panel is part of an overlay that is owned by the event
+ * dispatch thread, and while it is painted on that thread. Panels that have not
+ * been added to such an overlay, for example because they are painted into an
+ * <code>OffscreenOverlay</code>, are always laid out right away.
+ * 
+ * <h2>Key events</h2>
+ * Key events are not passed on to the children. The root of the overlay sends
+ * them straight to the focussed component, after which they bubble up through
+ * the panels that contain it.
  * 
  * @author Wessel Jongkind
  */
-public class OverlayPanel extends OverlayComponent
+public class OverlayPanel extends OverlayComponent implements OverlayContainer
 {
     /**
      * The children-components of the <code>OverlayComponent</code>.
@@ -52,10 +107,77 @@ public class OverlayPanel extends OverlayComponent
     
     private boolean useConstraints = false;
     
-    private boolean paintedOnce = false;
+    /**
+     * False if the children with constraints have to be laid out again.
+     */
+    private boolean layoutValid = false;
     
     private final GridBagLayout gbc = new GridBagLayout(components, constraints);
+    
+    /**
+     * Solves the layouts of all panels that lay out their children in the background.
+     * Passes are solved one at a time, in the order in which they were requested.
+     */
+    private static final ExecutorService LAYOUT_WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "CowLite layout worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private boolean asynchronousLayout = true;
+    
+    /**
+     * True once the children with constraints have been laid out, after which
+     * layouts may be solved in the background.
+     */
+    private boolean laidOutOnce = false;
+    
+    /**
+     * The sequence number of the latest layout pass that has been requested. It
+     * is read by the background thread to skip passes that have become outdated.
+     */
+    private volatile long layoutSequence = 0;
+    
+    /**
+     * The sequence number of the pass of which the bounds have been applied last.
+     */
+    private long appliedSequence = 0;
+    
+    /**
+     * True while a pass is being solved in the background. No other pass is
+     * requested until it has finished, so that a pass that takes longer than a
+     * frame is not made outdated by the next frame over and over again.
+     */
+    private boolean layoutPending = false;
+    
+    /**
+     * The location and size of all children, relative to the panel's origin.
+     */
+    private final SpatialIndex index = new SpatialIndex();
+    
+    /**
+     * The children that are focussed or that contain a focussed descendant.
+     */
+    private final LinkedHashSet<OverlayComponent> focusHolders = new LinkedHashSet<>();
+    
+    /**
+     * The children that need every mouse motion event, or that contain a descendant
+     * that does.
+     */
+    private final HashSet<OverlayComponent> everyMotion = new HashSet<>();
 
+    /**
+     * Requests a new layout of the children if needed, before the panel is painted
+     * or it's cached image is checked.
+     * @param g The graphics-device to be painted with.
+     */
+    @Override
+    public void paint(Graphics g)
+    {
+        updateLayout();
+        super.paint(g);
+    }
+    
     /**
      * Paints all children added to the panel.
      * @param g The graphics-device to be painted with.
@@ -72,20 +194,22 @@ public class OverlayPanel extends OverlayComponent
         Shape clip = g2.getClip();
         for(OverlayComponent comp : components)
         {
-            g2.setClip(clip);
             comp.setOffsetX(getX() + getOffsetX());
             comp.setOffsetY(getY() + getOffsetY());
-            comp.paintComponent(g);
         }
         
-        g2.setComposite(composite);
-        
-        if(!paintedOnce && useConstraints)
+        OverlayComponent[] children = components.toArray(new OverlayComponent[components.size()]);
+        boolean[] visible = OcclusionCuller.findVisible(children, g2.getClipBounds());
+        for(int i = 0; i < visible.length; i++)
         {
-            paintedOnce = true;
-            gridComponents();
-            paintComponent(g);
+            if(!visible[i])
+                continue;
+            
+            g2.setClip(clip);
+            children[i].paint(g);
         }
+        
+        g2.setComposite(composite);
     }
     
     /**
@@ -98,17 +222,66 @@ public class OverlayPanel extends OverlayComponent
             setPositioningData(comp);
         
         components.add(comp);
+        attach(comp);
     }
     
     public void add(OverlayComponent comp, OverlayConstraints c)
     {
         components.add(comp);
         constraints.put(comp, c.copy());
+        attach(comp);
         
-        if(useConstraints)
-            gridComponents();
+        gbc.invalidate();
+        invalidateLayout();
+    }
+    
+    /**
+     * Changes the constraints of a child. The children are laid out again before
+     * the next paint.
+     * <br>
+     * The grid is not updated for just this child: the columns and rows, their
+     * weights and the order in which minimum sizes are ensured are built again
+     * from the constraints of all children, which takes time proportional to
+     * <code>n log n</code> for <code>n</code> children. Only resizing the panel
+     * and changing minimum or maximum sizes reuse the grid.
+     * @param comp The child.
+     * @param c The new constraints of the child, which are copied.
+     */
+    public void setConstraints(OverlayComponent comp, OverlayConstraints c)
+    {
+        if(!components.contains(comp))
+            return;
         
-        paintedOnce = false;
+        constraints.put(comp, c.copy());
+        gbc.invalidate();
+        invalidateLayout();
+    }
+    
+    /**
+     * Returns a copy of the constraints of a child.
+     * @param comp The child.
+     * @return The constraints of the child, or null if it has been added without constraints.
+     */
+    public OverlayConstraints getConstraints(OverlayComponent comp)
+    {
+        OverlayConstraints c = constraints.get(comp);
+        return c == null ? null : c.copy();
+    }
+    
+    /**
+     * Makes this panel the container of the given child and positions the child
+     * relative to the panel so that it can be repainted correctly.
+     * @param comp The child that has been added.
+     */
+    private void attach(OverlayComponent comp)
+    {
+        comp.setOffsetX(getX() + getOffsetX());
+        comp.setOffsetY(getY() + getOffsetY());
+        comp.setContainer(this);
+        index.insert(comp, getLocalBounds(comp));
+        focusChanged(comp);
+        motionCoalescingChanged(comp);
+        comp.repaint();
     }
     
     /**
@@ -117,12 +290,22 @@ public class OverlayPanel extends OverlayComponent
      */
     public void remove(OverlayComponent comp)
     {
-        components.remove(comp);
-        if(constraints.containsKey(comp))
-            constraints.remove(comp);
+        if(!components.remove(comp))
+            return;
         
-        if(useConstraints)
-            gridComponents();
+        comp.repaint();
+        comp.setContainer(null);
+        index.remove(comp);
+        if(focusHolders.contains(comp))
+            focusChanged(comp);
+        if(everyMotion.contains(comp))
+            motionCoalescingChanged(comp);
+        
+        if(constraints.remove(comp) != null)
+        {
+            gbc.invalidate();
+            invalidateLayout();
+        }
     }
     
     @Override
@@ -145,13 +328,352 @@ public class OverlayPanel extends OverlayComponent
         super.setSize(width, height);
         
         if(useConstraints)
-            gridComponents();
+            invalidateLayout();
+    }
+    
+    /**
+     * Moves the panel and all of it's children.
+     * @param x The x-coordinate of the panel.
+     * @param y The y-coordinate of the panel.
+     */
+    @Override
+    public void setLocation(int x, int y)
+    {
+        super.setLocation(x, y);
+        updateChildOffsets();
+    }
+    
+    @Override
+    public void setOffsetX(int offset)
+    {
+        super.setOffsetX(offset);
+        updateChildOffsets();
+    }
+    
+    @Override
+    public void setOffsetY(int offset)
+    {
+        super.setOffsetY(offset);
+        updateChildOffsets();
     }
     
-    private void gridComponents()
+    /**
+     * Sets the offset of all children to the location of this panel relative to
+     * the overlay's origin, so that repaint requests of children cover the right area.
+     */
+    private void updateChildOffsets()
+    {
+        for(OverlayComponent comp : components)
+        {
+            comp.setOffsetX(getX() + getOffsetX());
+            comp.setOffsetY(getY() + getOffsetY());
+        }
+    }
+    
+    /**
+     * Passes the repaint request of a child on to the container of this panel.
+     * Only the part of the area that lies within this panel is passed on.
+     * @param source The child that requested the repaint.
+     * @param area The area to be repainted, relative to the overlay's origin.
+     */
+    @Override
+    public void repaintRequested(OverlayComponent source, Rectangle area)
     {
+        invalidateLayer();
+        
+        OverlayContainer container = getContainer();
+        if(container == null)
+            return;
+        
+        Rectangle bounds = getOverlayBounds();
+        bounds.grow(1, 1);
+        Rectangle damage = area.intersection(bounds);
+        
+        if(!damage.isEmpty())
+            container.repaintRequested(source, damage);
+    }
+    
+    /**
+     * Updates the location and size of the child in the index of this panel.
+     * @param source The child that has been moved or resized.
+     */
+    @Override
+    public void boundsChanged(OverlayComponent source)
+    {
+        index.update(source, getLocalBounds(source));
+    }
+    
+    /**
+     * Keeps track of which children contain focus. The container of the panel is
+     * always notified as well, so that the root of the overlay knows that the
+     * component that receives key events may have changed.
+     * @param source The child of which the focus has changed.
+     */
+    @Override
+    public void focusChanged(OverlayComponent source)
+    {
+        if(source.containsFocus() && source.getContainer() == this)
+            focusHolders.add(source);
+        else
+            focusHolders.remove(source);
+        
+        OverlayContainer container = getContainer();
+        if(container != null)
+            container.focusChanged(this);
+    }
+    
+    /**
+     * Keeps track of which children need every mouse motion event. If this changes
+     * wether the panel itself needs every motion event then the container of the
+     * panel is notified as well.
+     * @param source The child of which the motion coalescing has changed.
+     */
+    @Override
+    public void motionCoalescingChanged(OverlayComponent source)
+    {
+        boolean before = needsEveryMotion();
+        
+        if(source.needsEveryMotion() && source.getContainer() == this)
+            everyMotion.add(source);
+        else
+            everyMotion.remove(source);
+        
+        OverlayContainer container = getContainer();
+        if(container != null && before != needsEveryMotion())
+            container.motionCoalescingChanged(this);
+    }
+    
+    /**
+     * A panel is owned by the event dispatch thread if the container it has been
+     * added to is.
+     * @return True if the panel is part of an overlay that is owned by the event dispatch thread, otherwise false.
+     */
+    @Override
+    public boolean isOwnedByEventDispatchThread()
+    {
+        OverlayContainer container = getContainer();
+        return container != null && container.isOwnedByEventDispatchThread();
+    }
+    
+    /**
+     * Tells wether the content area of the panel is completely opaque. Besides the
+     * background of the panel, the foreground of all descendants has to be opaque,
+     * as a translucent foreground that is painted with <code>AlphaComposite.Src</code>
+     * would make the panel translucent at that spot.
+     * @return True if the content area of the panel is completely opaque, otherwise false.
+     */
+    @Override
+    public boolean isOpaque()
+    {
+        return getBackground().getAlpha() == 255 && hasOpaqueForegrounds();
+    }
+    
+    /**
+     * Checks if the foreground of all descendants of this panel is opaque.
+     * @return True if all descendants have an opaque foreground, otherwise false.
+     */
+    private boolean hasOpaqueForegrounds()
+    {
+        for(OverlayComponent comp : components)
+        {
+            if(comp.getForeground().getAlpha() != 255)
+                return false;
+            if(comp instanceof OverlayPanel && !((OverlayPanel) comp).hasOpaqueForegrounds())
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Tells wether the panel or any of it's descendants is focussed.
+     * @return True if the panel or one of it's descendants is focussed, otherwise false.
+     */
+    @Override
+    public boolean containsFocus()
+    {
+        return isFocussed() || !focusHolders.isEmpty();
+    }
+    
+    /**
+     * Returns the focussed descendant that lies deepest in the tree, below the
+     * topmost child that contains focus. If no descendant is focussed then the
+     * panel itself is returned if it is focussed.
+     * @return The component that key events should go to, or null if nothing in the panel is focussed.
+     */
+    @Override
+    public OverlayComponent getFocusOwner()
+    {
+        OverlayComponent topmost = null;
+        int topIndex = -1;
+        
+        for(OverlayComponent comp : focusHolders)
+        {
+            int i = components.indexOf(comp);
+            if(i > topIndex)
+            {
+                topmost = comp;
+                topIndex = i;
+            }
+        }
+        
+        OverlayComponent owner = topmost == null ? null : topmost.getFocusOwner();
+        if(owner != null)
+            return owner;
+        return super.getFocusOwner();
+    }
+    
+    /**
+     * Tells wether the panel or any of it's descendants needs every mouse motion event.
+     * @return True if the panel or one of it's descendants has disabled motion coalescing, otherwise false.
+     */
+    @Override
+    public boolean needsEveryMotion()
+    {
+        return super.needsEveryMotion() || !everyMotion.isEmpty();
+    }
+    
+    /**
+     * Returns the area a child occupies relative to the origin of this panel,
+     * which is the area under which it is stored in the index.
+     * @param comp The child.
+     * @return The location and size of the child.
+     */
+    private Rectangle getLocalBounds(OverlayComponent comp)
+    {
+        return new Rectangle(comp.getX(), comp.getY(), comp.getWidth(), comp.getHeight());
+    }
+    
+    /**
+     * Returns the children that a mouse event should be passed on to: the children
+     * below the mouse, topmost first, followed by the other children that contain focus.
+     * @param e The mouse event.
+     * @return The children that should receive the event.
+     */
+    private ArrayList<OverlayComponent> getMouseTargets(MouseEvent e)
+    {
+        updateLayout();
+        
+        ArrayList<OverlayComponent> targets = index.query(e.getX() - getX() - getOffsetX(), e.getY() - getY() - getOffsetY());
+        for(OverlayComponent comp : focusHolders)
+            if(!targets.contains(comp))
+                targets.add(comp);
+        return targets;
+    }
+    
+    /**
+     * Marks the layout of the children with constraints as outdated and requests
+     * a repaint, during which the children are laid out again.
+     */
+    public void invalidateLayout()
+    {
+        layoutValid = false;
+        repaint();
+    }
+    
+    /**
+     * Lays out the children with constraints right away if their layout is outdated,
+     * or if a layout is still being solved in the background.
+     */
+    public void validateLayout()
+    {
+        if(!useConstraints || (layoutValid && appliedSequence == layoutSequence))
+            return;
+        
+        //Nothing can be laid out yet, so the layout stays outdated until the panel has a size
+        if(getCorrectedWidth() == 0 || getCorrectedHeight() == 0)
+            return;
+        
+        layoutValid = true;
+        laidOutOnce = true;
+        appliedSequence = ++layoutSequence;
         gbc.gridComponents(this.getCorrectedWidth(), this.getCorrectedHeight());
-    } 
+    }
+    
+    /**
+     * Requests a new pass if the layout is outdated and no pass is being solved
+     * in the background. The first layout of the panel, and every layout while
+     * background layout cannot be used, is done right away.
+     */
+    private void updateLayout()
+    {
+        if(layoutValid || !useConstraints)
+            return;
+        
+        boolean background = asynchronousLayout && laidOutOnce
+                && EventQueue.isDispatchThread() && isOwnedByEventDispatchThread();
+        
+        if(!background)
+        {
+            validateLayout();
+            return;
+        }
+        
+        if(layoutPending || getCorrectedWidth() == 0 || getCorrectedHeight() == 0)
+            return;
+        
+        layoutValid = true;
+        long sequence = ++layoutSequence;
+        LayoutInput input = gbc.capture(getCorrectedWidth(), getCorrectedHeight(), sequence);
+        layoutPending = true;
+        LAYOUT_WORKER.execute(() -> solveLayout(input));
+    }
+    
+    /**
+     * Solves a layout pass and hands the snapshot to the event dispatch thread.
+     * This runs on the background thread, and skips passes of which a newer one
+     * has already been laid out right away.
+     * @param input The input of the pass, captured when it was requested.
+     */
+    private void solveLayout(LayoutInput input)
+    {
+        LayoutSnapshot snapshot = null;
+        try{
+            if(input.getSequence() == layoutSequence)
+                snapshot = gbc.solve(input);
+        }finally{
+            LayoutSnapshot solved = snapshot;
+            EventQueue.invokeLater(() -> applyLayout(solved));
+        }
+    }
+    
+    /**
+     * Applies a snapshot that has been solved in the background, if it belongs
+     * to the latest pass that has been requested. This runs on the event dispatch
+     * thread. Afterwards a repaint is requested, during which the next pass is
+     * requested if the layout has become outdated in the meantime.
+     * @param snapshot The solved snapshot, or null if the pass was skipped or failed.
+     */
+    private void applyLayout(LayoutSnapshot snapshot)
+    {
+        layoutPending = false;
+        
+        if(snapshot != null && snapshot.getSequence() == layoutSequence)
+        {
+            snapshot.apply(this);
+            appliedSequence = snapshot.getSequence();
+        }
+        
+        repaint();
+    }
+    
+    /**
+     * Sets wether the layout of the children with constraints is solved on a
+     * background thread after the first layout. It is enabled by default, but
+     * only used while the panel is part of an overlay that is owned by the event
+     * dispatch thread.
+     * @see #isOwnedByEventDispatchThread()
+     * @param enabled True to solve layouts in the background, false to solve them
+     *        right before the panel is painted.
+     */
+    public void setAsynchronousLayout(boolean enabled)
+    {
+        this.asynchronousLayout = enabled;
+    }
+    
+    public boolean isAsynchronousLayout()
+    {
+        return asynchronousLayout;
+    }
     
     private void sizeComponents()
     {
@@ -189,11 +711,22 @@ public class OverlayPanel extends OverlayComponent
     {
         this.useConstraints = use;
         if(use)
-            gridComponents();
+            invalidateLayout();
         else
             setPositioningData();
     }
     
+    /**
+     * Sets how many layouts of the children with constraints are remembered, so
+     * that resizing the panel back to a recent size does not solve the grid again.
+     * @see GridBagLayout#setCacheSize(int) 
+     * @param size The amount of layouts, or 0 to not remember any.
+     */
+    public void setLayoutCacheSize(int size)
+    {
+        gbc.setCacheSize(size);
+    }
+    
     public ArrayList<OverlayComponent> getComponents()
     {
         return components;
@@ -210,7 +743,7 @@ public class OverlayPanel extends OverlayComponent
     }
     
     /**
-     * Notifies all children that are an instance of MouseMotionListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse has been dragged.
      * @param e The <code>MouseEvent</code> corresponding to the movement of the mouse.
      */
@@ -218,13 +751,12 @@ public class OverlayPanel extends OverlayComponent
     public void mouseDragged(MouseEvent e) 
     { 
         super.mouseDragged(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseMotionListener)
-                ((MouseMotionListener)comp).mouseDragged(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseDragged(e);
     }
 
     /**
-     * Notifies all children that are an instance of MouseMotionListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse has been moved.
      * @param e The <code>MouseEvent</code> corresponding to the movement of the mouse.
      */
@@ -232,13 +764,12 @@ public class OverlayPanel extends OverlayComponent
     public void mouseMoved(MouseEvent e)
     {
         super.mouseMoved(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseMotionListener)
-                ((MouseMotionListener)comp).mouseMoved(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseMoved(e);
     }
 
     /**
-     * Notifies all children that are an instance of MouseListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse has been clicked.
      * @param e The <code>MouseEvent</code> corresponding to the action of the mouse.
      */
@@ -246,13 +777,12 @@ public class OverlayPanel extends OverlayComponent
     public void mouseClicked(MouseEvent e)
     {
         super.mouseClicked(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseClicked(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseClicked(e);
     }
 
     /**
-     * Notifies all children that are an instance of MouseListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse is pressed down.
      * @param e The <code>MouseEvent</code> corresponding to the action of the mouse.
      */
@@ -260,14 +790,13 @@ public class OverlayPanel extends OverlayComponent
     public void mousePressed(MouseEvent e)
     {
         super.mousePressed(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mousePressed(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mousePressed(e);
         
     }
 
     /**
-     * Notifies all children that are an instance of MouseListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse has been released.
      * @param e The <code>MouseEvent</code> corresponding to the action of the mouse.
      */
@@ -275,13 +804,12 @@ public class OverlayPanel extends OverlayComponent
     public void mouseReleased(MouseEvent e)
     {
         super.mouseReleased(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseReleased(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseReleased(e);
     }
 
     /**
-     * Notifies all children that are an instance of MouseListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse has entered a visible area of the overlay.
      * @param e The <code>MouseEvent</code> corresponding to the action of the mouse.
      */
@@ -289,13 +817,12 @@ public class OverlayPanel extends OverlayComponent
     public void mouseEntered(MouseEvent e)
     {
         super.mouseEntered(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseEntered(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseEntered(e);
     }
 
     /**
-     * Notifies all children that are an instance of MouseListener that the
+     * Notifies the children below the mouse and the children that contain focus that the
      * mouse has exited any visible area of the overlay.
      * @param e The <code>MouseEvent</code> corresponding to the action of the mouse.
      */
@@ -303,59 +830,15 @@ public class OverlayPanel extends OverlayComponent
     public void mouseExited(MouseEvent e)
     {
         super.mouseExited(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseExited(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseExited(e);
     }
 
-    /**
-     * Notifies all children that are a key has been typed. This can be in any window
-     * and it also gets triggered when the overlay is not focussed.
-     * @param e The <code>KeyEvent</code> corresponding to the key being typed.
-     */
-    @Override
-    public void keyTyped(KeyEvent e)
-    {
-        super.keyTyped(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof KeyListener)
-                ((KeyListener)comp).keyTyped(e);
-    }
-
-    /**
-     * Notifies all children that are a key is being pressed. This can be in any window
-     * and it also gets triggered when the overlay is not focussed.
-     * @param e The <code>KeyEvent</code> corresponding to the key being pressed.
-     */
-    @Override
-    public void keyPressed(KeyEvent e)
-    {
-        super.keyPressed(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof KeyListener)
-                ((KeyListener)comp).keyPressed(e);
-    }
-
-    /**
-     * Notifies all children that are a key has been released. This can be in any window
-     * and it also gets triggered when the overlay is not focussed.
-     * @param e The <code>KeyEvent</code> corresponding to the key being released.
-     */
-    @Override
-    public void keyReleased(KeyEvent e)
-    {
-        super.keyReleased(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof KeyListener)
-                ((KeyListener)comp).keyReleased(e);
-    }
-    
     @Override
     public void mouseWheelMoved(MouseWheelEvent e)
     {
         super.mouseWheelMoved(e);
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseWheelListener)
-                ((MouseWheelListener)comp).mouseWheelMoved(e);
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseWheelMoved(e);
     }
 }
@@ -82,16 +82,22 @@ public class OverlaySlider extends OverlayComponent implements MouseMotionListen
      */
     public void setPercentage(double percentage)
     {
+        double previous = this.percentage;
+        
         this.percentage = percentage;
         if(percentage < 0)
             this.percentage = 0;
         if(percentage > 1)
             this.percentage = 1;
+        
+        if(this.percentage != previous)
+            repaint();
     }
     
     public void setOrientation(boolean horizontal)
     {
         this.horizontal = horizontal;
+        repaint();
     }
     
     /**
@@ -7,23 +7,51 @@
  */
 package cowlite.deepswing.overlay.components;
 
+import cowlite.deepswing.overlay.components.text.LineAdvances;
+import cowlite.deepswing.overlay.components.text.TextDocument;
 import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.HeadlessException;
 import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.awt.geom.Rectangle2D;
+import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
  * This class allows the user to type multi-line text towards the overlay.
  * 
+ * <h2>Document</h2>
+ * The text is stored in a <code>TextDocument</code>, which keeps a gap at the
+ * cursor and an index of where every line starts. Typing, removing characters and
+ * splitting lines near the cursor take constant time, also in documents of many
+ * megabytes, and pasting text takes time proportional to the length of the text.
+ * 
+ * <h2>Cursor placement</h2>
+ * The width of every prefix of a line is measured once, when the line is first
+ * needed, and kept in <code>LineAdvances</code> until the line is edited. Placing
+ * the cursor, both while typing and when clicking, then only looks up or searches
+ * through these widths instead of measuring the text again.
+ * 
+ * <h2>Scrolling</h2>
+ * Only the lines that fit within the textfield are painted, measured and looked
+ * at when the mouse is clicked. Which lines these are follows directly from the
+ * vertical scroll position and the height of a line, so a textfield that holds
+ * a hundred thousand lines paints just as fast as one that holds only a few. The
+ * text scrolls along with the cursor while typing, and can be scrolled with the
+ * mouse wheel while the mouse is above the textfield.
+ * 
+ * @see TextDocument
  * @author Wessel Jongkind
  */
 public class OverlayTextField extends OverlayComponent implements MouseListener, KeyListener
@@ -45,20 +73,31 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
     private int horizontalOffset = 0;
     
     /**
-     * The amount of vertical offset needed to display the area of text with the
-     * cursor.
+     * The amount of pixels the text has been scrolled down. The first visible line
+     * is the line at this height.
      */
     private int verticalOffset = 0;
     
+    /**
+     * True if the cursor has moved since the last repaint, in which case the text
+     * is scrolled so that the cursor is visible again.
+     */
+    private boolean followCursor = true;
+    
     /**
      * The font that should be used to paint the text.
      */
     private Font font;
     
     /**
-     * The ArrayList that is used to contain all the lines of text.
+     * The document that contains all the lines of text.
      */
-    private ArrayList<String> lines = new ArrayList<>();
+    private final TextDocument document = new TextDocument();
+    
+    /**
+     * The widths of the prefixes of the lines of the document.
+     */
+    private final LineAdvances advances = new LineAdvances(document);
     
     /**
      * If the cursor is moving to the right (either when new text is being typed
@@ -90,6 +129,7 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
     public OverlayTextField()
     {
         this.font = DEFAULT_FONT;
+        setFocusTraversable(true);
     }
     
    /**
@@ -102,7 +142,8 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
     public OverlayTextField(String text)
     {
         this.font = DEFAULT_FONT;
-        lines.add(text);
+        document.setText(text);
+        setFocusTraversable(true);
     }
     
     /**
@@ -115,16 +156,16 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
     public OverlayTextField(String text, Font font)
     {
         this.font = font;
-        lines.add(text);
+        document.setText(text);
+        setFocusTraversable(true);
     }
 
     /**
-     * Paints the textfield and all the text. It draws all the lines, but only
-     * a part will be visible due to the clip that is being calculated for the
-     * <code>Graphics</code> object. In combination with <code>horizontalOffset</code>,
-     * <code>verticalOffset</code>, <code>getCorrectedWidth()</code> and <code>getCorrectedHeight()</code>
-     * it will calculate what the clip for the textfield should be. Only the text within the bounds
-     * of the clip is visible.
+     * Paints the textfield and the text. Only the lines that lie within the
+     * textfield are drawn, which are found from <code>verticalOffset</code> and
+     * the height of a line. The clip of the <code>Graphics</code> object is set to
+     * the area within the border, so that text which lies partly outside of the
+     * textfield is cut off.
      * @param g The graphics to be painting with.
      */
     @Override
@@ -134,9 +175,6 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
         
-        if(lines.size() < 1)
-            return;
-        
         Composite composite = g2.getComposite();
         
         g2.setComposite(AlphaComposite.Src);
@@ -150,18 +188,20 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
         
         positionText(g2);
         
-        //The drawing of the text
-        for(int i = 0; i < lines.size(); i++)
-            g2.drawString(lines.get(i), getCorrectedX() + 1 - horizontalOffset, getCorrectedY() + verticalOffset + (g2.getFont().getSize() * (i + 1)));
+        //The drawing of the visible lines
+        int lineHeight = font.getSize();
+        int last = getLastVisibleLine();
+        for(int i = Math.max(0, (verticalOffset - metrics.getDescent()) / lineHeight); i <= last; i++)
+            g2.drawString(document.getLine(i), getCorrectedX() + 1 - horizontalOffset, getCorrectedY() - verticalOffset + (lineHeight * (i + 1)));
         
         //The drawing of the cursor
-        int width = g2.getFontMetrics().stringWidth(lines.get(cursorY).substring(0, characterIndex));
+        int width = advances.getX(cursorY, characterIndex, metrics);
         
         if(isFocussed())
             g2.drawLine(getCorrectedX() - horizontalOffset + width, 
-                        getCorrectedY() + verticalOffset + (g2.getFont().getSize() * cursorY), 
+                        getCorrectedY() - verticalOffset + (lineHeight * cursorY), 
                         getCorrectedX() - horizontalOffset + width,
-                        getCorrectedY() + verticalOffset + (g2.getFont().getSize() * (cursorY + 1)));
+                        getCorrectedY() - verticalOffset + (lineHeight * (cursorY + 1)));
         
         g2.setComposite(composite);
     }
@@ -177,7 +217,9 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
      * that. If the cursor is moving to the left then the horizontal offset is
      * equal to the width of the string from index 0 to the index of the cursor.
      * <br>
-     * The y-offset is not being calculated yet. This will be implemented later.
+     * Vertically the text is only scrolled if the cursor has moved since the last
+     * repaint, so that scrolling with the mouse wheel is not undone. It is scrolled
+     * just far enough for the line of the cursor to be fully visible.
      * @see #horizontalOffset
      * @see #verticalOffset
      * @see #characterIndex
@@ -186,10 +228,18 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
      */
     private void positionText(Graphics2D g2)
     {
-        String line = lines.get(cursorY);
-        String trimmed = line.substring(0, characterIndex);
-
-        int width = g2.getFontMetrics().stringWidth(lines.get(cursorY).substring(0, characterIndex));
+        int lineHeight = font.getSize();
+        if(followCursor)
+        {
+            if(lineHeight * cursorY < verticalOffset)
+                verticalOffset = lineHeight * cursorY;
+            else if(lineHeight * (cursorY + 1) > verticalOffset + getCorrectedHeight())
+                verticalOffset = lineHeight * (cursorY + 1) - getCorrectedHeight();
+            followCursor = false;
+        }
+        verticalOffset = Math.max(0, Math.min(verticalOffset, getMaximumVerticalOffset()));
+        
+        int width = advances.getX(cursorY, characterIndex, g2.getFontMetrics());
 
         double cursorPosition = getCorrectedX() + 1 - horizontalOffset + width;
 
@@ -197,22 +247,47 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
             return;
 
         if(goingRight)
-            horizontalOffset = g2.getFontMetrics().stringWidth(trimmed) - getCorrectedWidth() + 1;
+            horizontalOffset = Math.max(width - getCorrectedWidth() + 1, 0);
         else
-            horizontalOffset = g2.getFontMetrics().stringWidth(trimmed);
+            horizontalOffset = width;
             
     }
     
     /**
      * the text to be displayed by the textfield. All currently present text
-     * will be overwritten by this method.
+     * will be overwritten by this method and the cursor is placed at the start
+     * of the text.
      * @see #getText() 
-     * @param text The text to be displayed.
+     * @param text The text to be displayed, in which lines are separated by <code>'\n'</code>.
      */
     public void setText(String text)
     {
-        lines.clear();
-        lines.add(text);
+        document.setText(text);
+        advances.clear();
+        cursorY = 0;
+        characterIndex = 0;
+        horizontalOffset = 0;
+        verticalOffset = 0;
+        repaint();
+    }
+    
+    /**
+     * Inserts text at the position of the cursor and places the cursor after it,
+     * as if the text was pasted.
+     * @param text The text to be inserted, in which lines are separated by <code>'\n'</code>.
+     */
+    public void insertText(String text)
+    {
+        goingRight = true;
+        int offset = getCursorOffset();
+        document.insert(offset, text);
+        if(text.indexOf('\n') == -1)
+            advances.lineChanged(cursorY);
+        else
+            advances.clear();
+        moveCursor(offset + text.length());
+        followCursor = true;
+        repaint();
     }
     
     /**
@@ -224,17 +299,85 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
     public void setFont(Font font)
     {
         this.font = font;
+        repaint();
     }
     
     /**
-     * Returns all the lines of the textfield seperated in an ArrayList.
+     * Returns all the lines of the textfield seperated in an ArrayList. The list
+     * is a copy, so changing it does not change the text of the textfield.
+     * @see #getDocument() 
      * @return All the lines of the textfield.
      */
     public ArrayList<String> getText()
     {
+        ArrayList<String> lines = new ArrayList<>(document.getLineCount());
+        for(int i = 0; i < document.getLineCount(); i++)
+            lines.add(document.getLine(i));
         return lines;
     }
     
+    /**
+     * Returns the document that contains the text of the textfield. Changes to
+     * the document are not picked up automatically; call <code>documentChanged()</code>
+     * after changing it.
+     * @see #documentChanged() 
+     * @return The document of the textfield.
+     */
+    public TextDocument getDocument()
+    {
+        return document;
+    }
+    
+    /**
+     * Notifies the textfield that it's document has been changed directly, so
+     * that the text gets measured and painted again.
+     */
+    public void documentChanged()
+    {
+        advances.clear();
+        correctIndices();
+        repaint();
+    }
+    
+    /**
+     * Scrolls the text so that the given line is the first visible line, as far
+     * as the text allows. The cursor does not move.
+     * @param line The index of the line.
+     */
+    public void scrollToLine(int line)
+    {
+        verticalOffset = Math.max(0, Math.min(line * font.getSize(), getMaximumVerticalOffset()));
+        repaint();
+    }
+    
+    /**
+     * Returns the first line that is at least partly visible.
+     * @return The index of the line at the top of the textfield.
+     */
+    public int getFirstVisibleLine()
+    {
+        return Math.min(verticalOffset / font.getSize(), document.getLineCount() - 1);
+    }
+    
+    /**
+     * Returns the last line that is at least partly visible.
+     * @return The index of the line at the bottom of the textfield.
+     */
+    public int getLastVisibleLine()
+    {
+        return Math.min((verticalOffset + Math.max(getCorrectedHeight() - 1, 0)) / font.getSize(), document.getLineCount() - 1);
+    }
+    
+    /**
+     * Returns how far the text can be scrolled down, which is as far as needed
+     * to show the last line at the bottom of the textfield.
+     * @return The maximum value of <code>verticalOffset</code>.
+     */
+    private int getMaximumVerticalOffset()
+    {
+        return Math.max(0, document.getLineCount() * font.getSize() - getCorrectedHeight());
+    }
+    
     /**
      * Returns the font used to draw the text of the textfield.
      * @return The font used to draw the text of the textfield.
@@ -258,49 +401,44 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
         {
             setFocussed(true);
             recalculateCharacterIndex(hit);
+            repaint();
         }
         else
             setFocussed(false);
     }
     
+    /**
+     * Scrolls the text if the mouse wheel is moved while the mouse is above the
+     * textfield, also when the textfield is not focussed.
+     * @param e The latest information about the mouse wheel.
+     */
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e)
+    {
+        super.mouseWheelMoved(e);
+        
+        if(getHit(e) == null)
+            return;
+        
+        scrollToLine(verticalOffset / font.getSize() + e.getUnitsToScroll());
+        e.consume();
+    }
+    
     /**
      * Recalculates <code>cursorY</code> and <code>characterIndex</code> by converting
-     * the point's position to a position in the text. It does this by assigning a
-     * rectangular area to each character. For each character is checked wether or not
-     * the point is in that rectangle.
-     * @param p The point to be converted.
+     * the point's position to a position in the text. The line follows directly
+     * from the height of the point and the scroll position, after which the closest position between two
+     * characters is found with a binary search through the advances of the line.
+     * @param p The point to be converted, relative to the textfield.
      */
     private void recalculateCharacterIndex(Point p)
     {
-        for(int i = 0; i < lines.size() && p != null; i++)
-        {
-            String line = lines.get(i);
-            
-            for(int j = 0; j < line.length(); j++)
-            {
-                int x = metrics.stringWidth(line.substring(0, j)) - horizontalOffset;
-                int y = verticalOffset + (font.getSize() * (i));
-                int height = font.getSize();
-                int width = metrics.stringWidth(line.charAt(j) + "");
-                
-                Rectangle2D.Double bounds = new Rectangle2D.Double(x, y, width, height);
-                
-                if(bounds.contains(p))
-                {
-                    characterIndex = j;
-                    cursorY = i;
-                    return;
-                }
-            }
-        }
-        
-        cursorY = lines.size() - 1;
+        if(p == null || metrics == null)
+            return;
         
-        if(cursorY == -1)
-        {
-            cursorY = 0;
-            characterIndex = 0;
-        }
+        int line = (p.y + verticalOffset) / font.getSize();
+        cursorY = Math.max(0, Math.min(line, document.getLineCount() - 1));
+        characterIndex = advances.getIndexAt(cursorY, p.x - 1 + horizontalOffset, metrics);
     }
 
     /**
@@ -328,23 +466,32 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
         if(e.getKeyCode() == KeyEvent.VK_BACK_SPACE)
         {   
             goingRight = false;
-            if(characterIndex == 0 && cursorY == 0)
+            int offset = getCursorOffset();
+            if(offset == 0)
                 return;
-            if(characterIndex == 0 && cursorY > 0)
-            {
-                cursorY--;
-                characterIndex = lines.get(cursorY).length();
-            }
-            lines.set(cursorY, lines.get(cursorY).substring(0, characterIndex - 1) + lines.get(cursorY).substring(characterIndex));
-            characterIndex--;
+            if(characterIndex == 0)
+                advances.clear();
+            else
+                advances.lineChanged(cursorY);
+            document.delete(offset - 1, 1);
+            moveCursor(offset - 1);
         } 
         
         else if(e.getKeyCode() == KeyEvent.VK_ENTER)
         {
             goingRight = false;
-            cursorY++;
-            characterIndex = 0;
-            lines.add(cursorY, "");
+            int offset = getCursorOffset();
+            document.insert(offset, '\n');
+            advances.clear();
+            moveCursor(offset + 1);
+        }
+        
+        else if(e.getKeyCode() == KeyEvent.VK_V && e.isControlDown())
+        {
+            String pasted = getClipboardText();
+            if(pasted != null)
+                insertText(pasted);
+            return;
         }
         
         else if(e.getKeyCode() == KeyEvent.VK_LEFT)
@@ -374,13 +521,14 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
         else if(isSymbol(e.getKeyChar()))
         {
             goingRight = true;
-            if(lines.size() <= cursorY)
-                lines.add(cursorY, "");
-            lines.set(cursorY, lines.get(cursorY).substring(0, characterIndex) + e.getKeyChar() + lines.get(cursorY).substring(characterIndex));
+            document.insert(getCursorOffset(), e.getKeyChar());
+            advances.lineChanged(cursorY);
             characterIndex++;
         }
         
         correctIndices();
+        followCursor = true;
+        repaint();
     }
     
     /**
@@ -391,21 +539,55 @@ public class OverlayTextField extends OverlayComponent implements MouseListener,
      */
     private void correctIndices()
     {
-        if(cursorY >= lines.size())
-            cursorY = lines.size() - 1;
+        if(cursorY >= document.getLineCount())
+            cursorY = document.getLineCount() - 1;
+        
+        if(cursorY < 0)
+            cursorY = 0;
         
-        if(lines.size() > 0 && characterIndex > lines.get(cursorY).length())
-            characterIndex = lines.get(cursorY).length();
+        if(characterIndex > document.getLineLength(cursorY))
+            characterIndex = document.getLineLength(cursorY);
         
         if(characterIndex < 0)
         {
             if(cursorY > 0)
                 cursorY--;
-            characterIndex = lines.get(cursorY).length();
+            characterIndex = document.getLineLength(cursorY);
+        }
+    }
+    
+    /**
+     * Returns the offset of the cursor in the document.
+     * @return The offset of the character after the cursor.
+     */
+    private int getCursorOffset()
+    {
+        return document.getLineStart(cursorY) + characterIndex;
+    }
+    
+    /**
+     * Places the cursor at an offset in the document.
+     * @param offset The offset of the character after the cursor.
+     */
+    private void moveCursor(int offset)
+    {
+        cursorY = document.getLineOfOffset(offset);
+        characterIndex = offset - document.getLineStart(cursorY);
+    }
+    
+    /**
+     * Returns the text on the system clipboard. Line breaks are converted to
+     * <code>'\n'</code>.
+     * @return The text on the clipboard, or null if the clipboard does not hold any text.
+     */
+    private String getClipboardText()
+    {
+        try{
+            String text = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+            return text.replace("\r\n", "\n").replace('\r', '\n');
+        }catch(HeadlessException | IllegalStateException | UnsupportedFlavorException | IOException e){
+            return null;
         }
-        
-        if(cursorY < 0)
-            cursorY = 0;
     }
     
     /**
@@ -31,6 +31,11 @@ public class Cell
     private int maxwidth = Integer.MAX_VALUE, maxheight = Integer.MAX_VALUE;
     private ArrayList<Cell> subcells = new ArrayList<>();
     
+    /**
+     * The names of the properties for <code>getValue</code> and <code>setValue</code>.
+     * @deprecated Use the typed getters and setters instead.
+     */
+    @Deprecated
     public static final String WIDTH = "WIDTH", HEIGHT = "HEIGHT", MIN_WIDTH = "MINWIDTH", MIN_HEIGHT = "MINHEIGHT",
                                WEIGHTX = "WEIGHTX", WEIGHTY = "WEIGHTY";
     
@@ -140,6 +145,15 @@ public class Cell
         return maxheight;
     }
     
+    /**
+     * Returns a property of the cell by it's name.
+     * @deprecated Compares strings and boxes the value on every call. Use the typed
+     *             getters, such as <code>getWidth()</code>, instead.
+     * @param value The name of the property, such as <code>WIDTH</code>.
+     * @return The value of the property.
+     * @throws Exception If there is no property with the given name.
+     */
+    @Deprecated
     public Object getValue(String value) throws Exception
     {
         if(value.equals(HEIGHT))
@@ -157,6 +171,15 @@ public class Cell
         throw new Exception("The requested variable has not been  found.");
     }
     
+    /**
+     * Changes a property of the cell by it's name.
+     * @deprecated Compares strings and unboxes the value on every call. Use the
+     *             typed setters, such as <code>setWidth(int)</code>, instead.
+     * @param target The name of the property, such as <code>WIDTH</code>.
+     * @param value The new value of the property.
+     * @throws Exception If there is no property with the given name.
+     */
+    @Deprecated
     public void setValue(String target, Object value) throws Exception
     {
         if(target.equals(HEIGHT))
@@ -15,173 +15,247 @@
  */
 package cowlite.deepswing.overlay.components.layout;
 
-import java.util.ArrayList;
-
 /**
- *
+ * The columns and rows of a <code>GridBagLayout</code>. Every column has a
+ * weight, which is the largest share of <code>weightx</code> of the components
+ * in that column, and gets a part of the width of the area in proportion to it's
+ * weight. The same goes for rows and the height of the area.
+ * <br>
+ * The weights only change when the constraints of the components change, so a
+ * grid can be kept and given a new area size, after which only the sizes of the
+ * columns and rows are calculated again.
+ * <br>
+ * The size, minimum size and weight of the columns and rows are kept in arrays
+ * of primitives, one array per property, so that a layout pass does not create
+ * any objects. Columns and rows have no maximum size; the maximum size of a
+ * component only limits the component itself, which is centered within the
+ * columns and rows it spans.
+ * <br>
+ * The offset of every column and row from the start of the area is kept as a
+ * prefix sum of their sizes, which is calculated again after the sizes have
+ * changed. The position and size of any range of columns or rows then follows
+ * from two offsets.
+ * 
  * @author Wessel
  */
 public class Grid
 {
-    private ArrayList<Cell> hcells = new ArrayList<>();
-    private ArrayList<Cell> vcells = new ArrayList<>();
+    private int[] widths = new int[0], heights = new int[0];
+    private int[] minimumWidths = new int[0], minimumHeights = new int[0];
+    private double[] weightsX = new double[0], weightsY = new double[0];
     private int width, height;
     private double totalWeightX = 0;
     private double totalWeightY = 0;
     
+    /**
+     * The offset of every column and row, and the total size at the end. They are
+     * only valid while <code>offsetsValid</code> is true.
+     */
+    private int[] offsetsX = new int[1], offsetsY = new int[1];
+    
+    private boolean offsetsValid = false;
+    
     public Grid(int width, int height)
     {
         this.width = width;
         this.height = height;
     }
     
-    public void calculateCells(ArrayList<ArrayList<Cell>> cells, int totalWidth, int totalHeight)
+    /**
+     * Sets the columns and rows of the grid and calculates their sizes. The arrays
+     * are used by the grid from then on, and should not be changed anymore.
+     * @param weightsX The weight of every column.
+     * @param weightsY The weight of every row.
+     */
+    public void setWeights(double[] weightsX, double[] weightsY)
     {
-        totalWeightX = 0;
-        totalWeightY = 0;
+        this.weightsX = weightsX;
+        this.weightsY = weightsY;
         
-        for(int i = 0; i < totalWidth; i++)
+        if(widths.length != weightsX.length)
         {
-            double maxWeight = 0;
-            //int minSize = Integer.MIN_VALUE;
-            //int maxSize = Integer.MIN_VALUE;
-            for(int j = 0; j < totalHeight; j++)
-            {
-                Cell cell = cells.get(i).get(j);
-                maxWeight = Math.max(maxWeight, cell.getWeightX());
-                //minSize = Math.max(cell.getMinimumWidth(), minSize);
-                //maxSize = Math.max(cell.getMaximumWidth(), maxSize);
-            }
-            Cell cell = new Cell(i, 0);
-            cell.setWeightX(maxWeight);
-            //cell.setMinimumSize(minSize, Integer.MIN_VALUE);
-            //cell.setMaximumSize(maxSize, Integer.MIN_VALUE);
-            hcells.add(cell);
-            totalWeightX += maxWeight;
+            widths = new int[weightsX.length];
+            minimumWidths = new int[weightsX.length];
         }
         
-        for(int i = 0; i < totalHeight; i++)
+        if(heights.length != weightsY.length)
         {
-            double maxWeight = 0;
-            //int minSize = Integer.MIN_VALUE;
-            //int maxSize = Integer.MIN_VALUE;
-            for(int j = 0; j < totalWidth; j++)
-            {
-                Cell cell = cells.get(j).get(i);
-                maxWeight = Math.max(maxWeight, cell.getWeightY());
-                //minSize = Math.max(cell.getMinimumHeight(), minSize);
-                //maxSize = Math.max(cell.getMaximumHeight(), maxSize);
-            }
-            Cell cell = new Cell(0, i);
-            cell.setWeightY(maxWeight);
-            //cell.setMinimumSize(Integer.MIN_VALUE, minSize);
-            //cell.setMaximumSize(Integer.MIN_VALUE, maxSize);
-            vcells.add(cell);
-            totalWeightY += maxWeight;
+            heights = new int[weightsY.length];
+            minimumHeights = new int[weightsY.length];
         }
         
+        totalWeightX = 0;
+        for(double weight : weightsX)
+            totalWeightX += weight;
+        
+        totalWeightY = 0;
+        for(double weight : weightsY)
+            totalWeightY += weight;
+        
+        calculateSizes();
+    }
+    
+    /**
+     * Changes the size of the area the grid is divided over, and calculates the
+     * sizes of the columns and rows again.
+     * @param width The width of the area.
+     * @param height The height of the area.
+     */
+    public void setSize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
         calculateSizes();
     }
     
-    private void calculateSizes()
+    /**
+     * Divides the area over the columns and rows by their weights, undoing any
+     * minimum sizes that have been ensured before.
+     */
+    public void calculateSizes()
     {
-        for(int i = 0; i < hcells.size(); i++)
+        offsetsValid = false;
+        
+        for(int i = 0; i < widths.length; i++)
         {
-            double correctedWeight = hcells.get(i).getWeightX() / totalWeightX;
-            hcells.get(i).setWidth((int)Math.round(width * correctedWeight));
+            double correctedWeight = weightsX[i] / totalWeightX;
+            widths[i] = (int) Math.round(width * correctedWeight);
+            minimumWidths[i] = 0;
         }
         
-        for(int i = 0; i < vcells.size(); i++)
+        for(int i = 0; i < heights.length; i++)
         {
-            double correctedWeight = vcells.get(i).getWeightY() / totalWeightY;
-            vcells.get(i).setHeight((int)Math.round(height * correctedWeight));
+            double correctedWeight = weightsY[i] / totalWeightY;
+            heights[i] = (int) Math.round(height * correctedWeight);
+            minimumHeights[i] = 0;
         }
     }
     
+    /**
+     * Makes sure the columns from <code>x1</code> up to <code>x2</code> are together
+     * at least the given width wide.
+     * @see #ensureMinimumSize(int, int, int, int[], int[], double[]) 
+     * @param x1 The first column.
+     * @param x2 The column after the last column.
+     * @param width The minimum width of the columns together.
+     */
     public void ensureMinimumWidth(int x1, int x2, int width)
     {
-        try{
-            ensureMinimumSize(x1, x2, width, hcells, Cell.WIDTH, Cell.MIN_WIDTH, Cell.WEIGHTX);
-        }catch(Exception e){e.printStackTrace();}
+        ensureMinimumSize(x1, x2, width, widths, minimumWidths, weightsX);
     }
     
+    /**
+     * Makes sure the rows from <code>y1</code> up to <code>y2</code> are together
+     * at least the given height high.
+     * @see #ensureMinimumSize(int, int, int, int[], int[], double[]) 
+     * @param y1 The first row.
+     * @param y2 The row after the last row.
+     * @param height The minimum height of the rows together.
+     */
     public void ensureMinimumHeight(int y1, int y2, int height)
     {
-        try{
-            ensureMinimumSize(y1, y2, height, vcells, Cell.HEIGHT, Cell.MIN_HEIGHT, Cell.WEIGHTY);
-        }catch(Exception e){e.printStackTrace();}
+        ensureMinimumSize(y1, y2, height, heights, minimumHeights, weightsY);
     }
     
-    private void ensureMinimumSize(int c1, int c2, int size, ArrayList<Cell> cells, String dimension, String minimumDimension, String dimensionWeight) throws Exception
+    /**
+     * Makes sure a range of columns or rows is together at least the given size.
+     * The missing space is taken from the columns or rows outside of the range
+     * that are larger than their minimum size. Those without weight give up their
+     * space first, after which the rest is taken from the others by weight. The
+     * space is then divided over the range by weight, or evenly if the range has
+     * no weight, and what is left after rounding goes to the first of them. Finally the
+     * columns or rows in the range get their new size as minimum size, so that
+     * ensuring the next minimum size does not take the space away again.
+     * <br>
+     * Every step is a fixed amount of passes over the columns or rows, so the time
+     * this takes is linear in their number. If not enough space can be found then
+     * the range gets as much as there is.
+     * @param c1 The first column or row of the range.
+     * @param c2 The column or row after the last one of the range.
+     * @param size The minimum size of the range together.
+     * @param sizes The sizes of the columns or rows.
+     * @param minimums The minimum sizes of the columns or rows.
+     * @param weights The weights of the columns or rows.
+     */
+    private void ensureMinimumSize(int c1, int c2, int size, int[] sizes, int[] minimums, double[] weights)
     {
-        int presentSize = 0;
-        do{
-            for(int i = c1; i < c2; i++)
-                presentSize += (int) cells.get(i).getValue(dimension);
-            
-            if(size <= presentSize)
-                return;
-
-            int availableSize = 0;
-            int additionalSize = size - presentSize;
-            double availableWeight = 0;
+        long presentSize = 0;
+        double rangeWeight = 0;
+        for(int i = c1; i < c2; i++)
+        {
+            presentSize += sizes[i];
+            rangeWeight += weights[i];
+        }
+        
+        if(size <= presentSize)
+            return;
+        
+        long free = 0;
+        double freeWeight = 0;
+        for(int i = 0; i < sizes.length; i++)
+        {
+            if(i >= c1 && i < c2)
+                continue;
             
-
-            ArrayList<Cell> availableCells = new ArrayList<>();
-            for(int i = 0; i < cells.size(); i++)
+            free += Math.max(sizes[i] - minimums[i], 0);
+            if(sizes[i] > minimums[i])
+                freeWeight += weights[i];
+        }
+        
+        int needed = (int) Math.min(size - presentSize, free);
+        if(needed <= 0)
+            return;
+        
+        offsetsValid = false;
+        
+        //Taking the space from the columns or rows outside of the range.
+        int remaining = needed;
+        for(int i = 0; i < sizes.length && remaining > 0; i++)
+        {
+            if((i < c1 || i >= c2) && weights[i] <= 0 && sizes[i] > minimums[i])
             {
-                int cellFree = (int) cells.get(i).getValue(dimension) - (int) cells.get(i).getValue(minimumDimension);
-                if(cellFree > 0 && (i < c1 || i >= c2))
-                {
-                    availableSize = availableSize + cellFree;
-                    availableWeight = availableWeight + (double) cells.get(i).getValue(dimensionWeight);
-                    availableCells.add(cells.get(i));
-                }
+                int take = Math.min(sizes[i] - minimums[i], remaining);
+                sizes[i] -= take;
+                remaining -= take;
             }
-
-            if(availableSize <= 0)
-                return;
-
-            for(int i = 0; i < availableCells.size(); i++)
+        }
+        
+        int weighted = remaining;
+        for(int i = 0; i < sizes.length && remaining > 0 && freeWeight > 0; i++)
+        {
+            if((i < c1 || i >= c2) && weights[i] > 0 && sizes[i] > minimums[i])
             {
-                Cell c = availableCells.get(i);
-                int freeSpace = (int) c.getValue(dimension) - (int) c.getValue(minimumDimension);
-                int freeWeightedSpace = (int) Math.round(((double) c.getValue(dimensionWeight) / availableWeight) * additionalSize);
-                int takeAway;
-                if((double) c.getValue(dimensionWeight) <= 0)
-                    takeAway = freeSpace;
-                else
-                    takeAway = Math.min(freeSpace, freeWeightedSpace);
-                
-                cells.get(i).setValue(dimension, (int) c.getValue(dimension) - takeAway);
-
-                for(int j = c1; j < c2; j++)
-                {
-                    int add = (int) Math.round(takeAway / (double) (c2-j));
-                    cells.get(j).setValue(dimension, (int) cells.get(j).getValue(dimension) + add);
-                    cells.get(j).setValue(minimumDimension, (int) cells.get(j).getValue(dimension) + add);
-                    takeAway -= add;
-                }
-
+                int take = (int) Math.min(Math.min(weighted * (weights[i] / freeWeight), sizes[i] - minimums[i]), remaining);
+                sizes[i] -= take;
+                remaining -= take;
             }
-        }while(presentSize < size);
+        }
         
-        //calculateWeights();
-    }
-    
-    private void calculateWeights()
-    {
-        for(int i = 0; i < hcells.size(); i++)
+        for(int i = 0; i < sizes.length && remaining > 0; i++)
         {
-            double correctedWeight = hcells.get(i).getWidth() / (double) width;
-            hcells.get(i).setWeightX(correctedWeight);
+            if((i < c1 || i >= c2) && sizes[i] > minimums[i])
+            {
+                int take = Math.min(sizes[i] - minimums[i], remaining);
+                sizes[i] -= take;
+                remaining -= take;
+            }
         }
         
-        for(int i = 0; i < vcells.size(); i++)
+        //Dividing the space over the range.
+        remaining = needed;
+        for(int i = c1; i < c2 && remaining > 0; i++)
         {
-            double correctedWeight = vcells.get(i).getWidth() / (double) height;
-            vcells.get(i).setWeightY(correctedWeight);
+            double share = rangeWeight > 0 ? weights[i] / rangeWeight : 1.0 / (c2 - c1);
+            int add = (int) Math.min(needed * share, remaining);
+            sizes[i] += add;
+            remaining -= add;
         }
+        
+        if(c2 > c1)
+            sizes[c1] += remaining;
+        
+        for(int i = c1; i < c2; i++)
+            minimums[i] = sizes[i];
     }
     
     public double getTotalWeightX()
@@ -194,43 +268,85 @@ public class Grid
         return totalWeightY;
     }
     
-    public ArrayList<ArrayList<Cell>> getCells()
+    public int getColumnCount()
     {
-        ArrayList<ArrayList<Cell>> cells = new ArrayList<>();
-        for(int i = 0; i < hcells.size(); i++)
-        {
-            cells.add(new ArrayList<>());
-            for(int j = 0; j < vcells.size(); j++)
-            {
-                Cell cell = new Cell(i, j);
-                cell.setWeightX(hcells.get(i).getWeightX());
-                cell.setWidth(hcells.get(i).getWidth());
-                cell.setWeightY(vcells.get(j).getWeightY());
-                cell.setHeight(vcells.get(j).getHeight());
-                cells.get(i).add(cell);
-            }
-        }
-        
-        return cells;
+        return widths.length;
+    }
+    
+    public int getRowCount()
+    {
+        return heights.length;
     }
     
-    /*public ArrayList<Double> getMaxWeightsX()
+    public int getColumnWidth(int column)
     {
-        return weightsx;
+        return widths[column];
     }
     
-    public ArrayList<Double> getMaxWeightY()
+    public int getRowHeight(int row)
     {
-        return weightsy;
+        return heights[row];
     }
     
-    public ArrayList<Integer> getWidths()
+    public double getColumnWeight(int column)
     {
-        return widths;
+        return weightsX[column];
     }
     
-    public ArrayList<Integer> getHeights()
+    public double getRowWeight(int row)
     {
-        return heights;
-    }*/
+        return weightsY[row];
+    }
+    
+    public int getColumnMinimumWidth(int column)
+    {
+        return minimumWidths[column];
+    }
+    
+    public int getRowMinimumHeight(int row)
+    {
+        return minimumHeights[row];
+    }
+    
+    /**
+     * Returns the distance from the start of the area to a column.
+     * @param column The index of the column, up to the amount of columns for the
+     *               total width of all columns.
+     * @return The sum of the widths of all columns before the given column.
+     */
+    public int getColumnOffset(int column)
+    {
+        updateOffsets();
+        return offsetsX[column];
+    }
+    
+    /**
+     * Returns the distance from the start of the area to a row.
+     * @param row The index of the row, up to the amount of rows for the total
+     *            height of all rows.
+     * @return The sum of the heights of all rows before the given row.
+     */
+    public int getRowOffset(int row)
+    {
+        updateOffsets();
+        return offsetsY[row];
+    }
+    
+    private void updateOffsets()
+    {
+        if(offsetsValid)
+            return;
+        
+        if(offsetsX.length != widths.length + 1)
+            offsetsX = new int[widths.length + 1];
+        if(offsetsY.length != heights.length + 1)
+            offsetsY = new int[heights.length + 1];
+        
+        for(int i = 0; i < widths.length; i++)
+            offsetsX[i + 1] = offsetsX[i] + widths[i];
+        for(int i = 0; i < heights.length; i++)
+            offsetsY[i + 1] = offsetsY[i] + heights[i];
+        
+        offsetsValid = true;
+    }
 }
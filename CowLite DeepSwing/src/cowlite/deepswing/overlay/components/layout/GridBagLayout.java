@@ -15,30 +15,145 @@
  */
 package cowlite.deepswing.overlay.components.layout;
 
-import cowlite.deepswing.overlay.components.OverlayButton;
 import cowlite.deepswing.overlay.components.OverlayComponent;
-import static java.awt.SystemColor.text;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import cowlite.deepswing.overlay.util.OverlayConstraints;
+import cowlite.deepswing.overlay.util.OverlayMetrics;
 
 
 
 /**
- *
+ * Lays out components on a grid by the <code>OverlayConstraints</code> they have
+ * been added with. Components without constraints are left alone.
+ * <br>
+ * A layout pass only does the work that is needed for what has changed since
+ * the previous pass. The weights of the columns and rows only depend on the
+ * constraints, so they are kept until <code>invalidate()</code> is called. If
+ * only the size of the area has changed then the columns and rows are divided
+ * over the new area, and if only the minimum size of a component has changed
+ * then the minimum sizes are ensured again. If nothing has changed then nothing
+ * is solved at all and the bounds of the previous pass are used again. The list
+ * of components is never reordered.
+ * <br>
+ * Only the columns and rows that are spanned by a component are part of the
+ * grid. Empty columns and rows never get any space, so leaving them out does not
+ * change the layout, and a component at <code>gridx</code> one million does not
+ * cost a million columns. The position and size of a component follow from the
+ * offsets of it's first column and the column after it's last column, which the
+ * grid keeps as prefix sums.
+ * <br>
+ * The bounds that come out of a pass are remembered for the last few
+ * combinations of components, constraints, minimum and maximum sizes and area
+ * size that have been laid out. Remembered bounds are only used again if all of
+ * these are equal; a hash of them only decides where they are looked up. A panel that is resized back and forth between a few
+ * sizes, or that switches between a few sets of constraints, gets the remembered
+ * bounds instead of solving the grid again. The least recently used bounds are
+ * forgotten first.
+ * <br>
+ * A pass is split in two steps so that the grid can be solved on another thread
+ * than the one that owns the components. <code>capture()</code> copies the
+ * constraints and the minimum and maximum sizes of the components into a
+ * <code>LayoutInput</code>, and <code>solve()</code> turns that input into an
+ * immutable <code>LayoutSnapshot</code> of the bounds, without touching the
+ * components. Applying the snapshot is left to the owner of the components.
+ * <code>gridComponents()</code> does all three right away.
+ * 
  * @author Wessel
  */
 public class GridBagLayout
 {
     private final ArrayList<OverlayComponent> components;
-    private final ArrayList<ArrayList<Cell>> cells = new ArrayList<>();
-    private final ArrayList<OverlayComponent> requiredX = new ArrayList<>();
-    private final ArrayList<OverlayComponent> requiredY = new ArrayList<>();
     private final HashMap<OverlayComponent, OverlayConstraints> constraints;
-    private double totalWeightX, totalWeightY;
     
+    /**
+     * The columns and rows, which are kept between passes.
+     */
+    private final Grid grid = new Grid(0, 0);
+    
+    /**
+     * The first column of every component, and the column after it's last column,
+     * as indices in the grid without empty columns. The arrays below hold a value
+     * for every component of the last input, at the same index.
+     */
+    private int[] columnStart = new int[0], columnEnd = new int[0];
+    
+    /**
+     * The first row of every component, and the row after it's last row, as
+     * indices in the grid without empty rows.
+     */
+    private int[] rowStart = new int[0], rowEnd = new int[0];
+    
+    /**
+     * The indices of the components by the amount of columns they span. Narrow
+     * components get their minimum width first, so that wide components only
+     * have to cover what is left.
+     */
+    private int[] byWidth = new int[0];
+    
+    /**
+     * The indices of the components by the amount of rows they span.
+     */
+    private int[] byHeight = new int[0];
+    
+    /**
+     * The minimum and maximum sizes of the components during the last pass.
+     */
+    private int[] minimumWidths = new int[0], minimumHeights = new int[0];
+    
+    private int[] maximumWidths = new int[0], maximumHeights = new int[0];
+    
+    /**
+     * A hash of the components and their constraints, calculated when the grid is
+     * built. It is only used to look up remembered layouts.
+     */
+    private long constraintsFingerprint;
+    
+    /**
+     * A hash of the minimum and maximum sizes of the components during the last pass.
+     */
+    private long sizeFingerprint;
+    
+    /**
+     * The default amount of layouts that are remembered.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 8;
+    
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    
+    /**
+     * The bounds of the components after recent passes, as x, y, width and height
+     * for every component. The least recently used layout comes first.
+     */
+    private final LinkedHashMap<LayoutKey, int[]> cache = new LinkedHashMap<LayoutKey, int[]>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LayoutKey, int[]> eldest)
+        {
+            return size() > cacheSize;
+        }
+    };
+    
+    /**
+     * Counts the calls to <code>invalidate()</code>. It is only used on the thread
+     * that owns the components, and is passed on to the solver with every input.
+     */
+    private int version = 0;
+    
+    /**
+     * The version of the input from which the grid was built.
+     */
+    private int builtVersion = -1;
+    
+    /**
+     * The bounds of the components after the last pass.
+     */
+    private int[] bounds = new int[0];
+    
+    private int areaWidth, areaHeight;
     
     public GridBagLayout(ArrayList<OverlayComponent> components, HashMap<OverlayComponent, OverlayConstraints> constraints)
     {
@@ -46,464 +161,398 @@ public class GridBagLayout
         this.constraints = constraints;
     }
     
+    /**
+     * Notifies the layout that components have been added or removed, or that the
+     * constraints of a component have changed. The whole grid is built again during
+     * the next pass, also if only a single component has changed. This should be
+     * called on the thread that owns the components.
+     */
+    public void invalidate()
+    {
+        version++;
+    }
+    
+    /**
+     * Sets how many layouts are remembered. By default this is <code>DEFAULT_CACHE_SIZE</code>.
+     * @param size The amount of layouts, or 0 to not remember any.
+     */
+    public synchronized void setCacheSize(int size)
+    {
+        this.cacheSize = Math.max(size, 0);
+        
+        while(cache.size() > cacheSize)
+            cache.remove(cache.keySet().iterator().next());
+    }
+    
+    public synchronized int getCacheSize()
+    {
+        return cacheSize;
+    }
+    
+    /**
+     * Lays out the components right away, on the calling thread.
+     * @param areaWidth The width of the area the components are laid out in.
+     * @param areaHeight The height of the area the components are laid out in.
+     */
     public void gridComponents(int areaWidth, int areaHeight)
     {
         if(areaWidth == 0 || areaHeight == 0)
             return;
         
-        System.out.println("--------------------------------------");
-        cells.clear();
+        solve(capture(areaWidth, areaHeight, 0)).apply();
+    }
+    
+    /**
+     * Copies everything a layout pass depends on: the components with constraints,
+     * their constraints and their minimum and maximum sizes. This should be called
+     * on the thread that owns the components.
+     * @param areaWidth The width of the area the components are laid out in.
+     * @param areaHeight The height of the area the components are laid out in.
+     * @param sequence A number by which the caller can recognize the snapshot that is solved from the input.
+     * @return The input of a layout pass.
+     */
+    public LayoutInput capture(int areaWidth, int areaHeight, long sequence)
+    {
+        int count = 0;
+        for(OverlayComponent comp : components)
+            if(constraints.get(comp) != null)
+                count++;
         
-        int totalWidth = 0;
-        int totalHeight = 0;
+        LayoutInput input = new LayoutInput(count, areaWidth, areaHeight, version, sequence);
         
+        int k = 0;
         for(OverlayComponent comp : components)
         {
             OverlayConstraints c = constraints.get(comp);
+            if(c == null)
+                continue;
             
-            int x = c.gridx();
-            int y = c.gridy();
-            int width = c.gridwidth();
-            int height = c.gridheight();
-            
-            totalWidth = Math.max(totalWidth, x + width);
-            totalHeight = Math.max(totalHeight, y + height);
+            input.components[k] = comp;
+            input.gridx[k] = c.gridx();
+            input.gridy[k] = c.gridy();
+            input.gridwidth[k] = c.gridwidth();
+            input.gridheight[k] = c.gridheight();
+            input.weightx[k] = c.weightx();
+            input.weighty[k] = c.weighty();
+            input.minimumWidths[k] = comp.getMinimumWidth();
+            input.minimumHeights[k] = comp.getMinimumHeight();
+            input.maximumWidths[k] = comp.getMaximumWidth();
+            input.maximumHeights[k] = comp.getMaximumHeight();
+            k++;
         }
         
-        if(totalWidth == 0 || totalHeight == 0)
-            return;
+        return input;
+    }
+    
+    /**
+     * Calculates the bounds of the components from a captured input. The components
+     * themselves are not read or changed, so this can be called on any thread.
+     * Passes are done one at a time, as they share the grid and the remembered layouts.
+     * @param input The input, captured by <code>capture()</code>.
+     * @return The bounds of the components with constraints.
+     */
+    public synchronized LayoutSnapshot solve(LayoutInput input)
+    {
+        long start = OverlayMetrics.isRecording() ? System.nanoTime() : 0;
         
-        for(int i = 0; i < totalWidth; i++)
-        {
-            cells.add(new ArrayList<>());
-            for(int j = 0; j < totalHeight; j++)
-                cells.get(i).add(new Cell(i, j));
-        }
+        layoutComponents(input);
         
-        for(OverlayComponent comp : components)
+        if(start != 0)
+            OverlayMetrics.recordLayout(System.nanoTime() - start);
+        
+        return new LayoutSnapshot(input.components, bounds, input.sequence);
+    }
+    
+    private void layoutComponents(LayoutInput input)
+    {
+        boolean changed = false;
+        
+        if(input.version != builtVersion)
         {
-            OverlayConstraints c = constraints.get(comp);
-            int x = c.gridx();
-            int y = c.gridy();
-            int width = c.gridwidth();
-            int height = c.gridheight();
-            
-            for(int i = x; i < x + width; i++)
-            {
-                for(int j = y; j < y + height; j++)
-                {
-                    Cell cell = cells.get(i).get(j);
-                    cell.setWeightX(Math.max(c.weightx() / width, cell.getWeightX()));
-                    cell.setWeightY(Math.max(c.weighty() / height, cell.getWeightY()));
-                }
-            }
+            buildGrid(input);
+            builtVersion = input.version;
+            changed = true;
         }
         
-       // System.out.println(totalWidth + "    " + cells.size());
-       // System.out.println(totalHeight + "    " + cells.get(0).size());
-        Grid grid = new Grid(areaWidth, areaHeight);
-        grid.calculateCells(cells, totalWidth, totalHeight);
-        
-        Collections.sort(components, new Comparator<OverlayComponent>() {
-            @Override
-            public int compare(OverlayComponent comp1, OverlayComponent comp2)
-            {
-                OverlayConstraints c1 = constraints.get(comp1);
-                OverlayConstraints c2 = constraints.get(comp2);
-                Integer width1 = c1.gridwidth();
-                Integer width2 = c2.gridwidth();
-                return  width1.compareTo(width2);
-            }
-        });
+        changed |= updateSizeLimits(input);
         
-        for(OverlayComponent comp : components)
+        if(!changed && input.areaWidth == areaWidth && input.areaHeight == areaHeight)
+            return;
+        
+        areaWidth = input.areaWidth;
+        areaHeight = input.areaHeight;
+        
+        if(input.components.length == 0)
         {
-            OverlayConstraints c = constraints.get(comp);
-            
-            int x = c.gridx();
-            int width = c.gridwidth();
-            int minimumWidth = comp.getMinimumWidth();
-            
-            grid.ensureMinimumWidth(x, x + width, minimumWidth);
+            bounds = new int[0];
+            return;
         }
         
-        Collections.sort(components, new Comparator<OverlayComponent>() {
-            @Override
-            public int compare(OverlayComponent comp1, OverlayComponent comp2)
-            {
-                OverlayConstraints c1 = constraints.get(comp1);
-                OverlayConstraints c2 = constraints.get(comp2);
-                Integer height1 = c1.gridheight();
-                Integer height2 = c2.gridheight();
-                return  height1.compareTo(height2);
-            }
-        });
+        LayoutKey key = new LayoutKey(input, constraintsFingerprint * 31 + sizeFingerprint);
+        bounds = cacheSize > 0 ? cache.get(key) : null;
         
-        for(OverlayComponent comp : components)
+        if(bounds == null)
         {
-            OverlayConstraints c = constraints.get(comp);
+            grid.setSize(areaWidth, areaHeight);
             
-            int y = c.gridy();
-            int height = c.gridheight();
-            int minimumHeight = comp.getMinimumHeight();
+            for(int i : byWidth)
+                grid.ensureMinimumWidth(columnStart[i], columnEnd[i], minimumWidths[i]);
+
+            for(int i : byHeight)
+                grid.ensureMinimumHeight(rowStart[i], rowEnd[i], minimumHeights[i]);
             
-            grid.ensureMinimumHeight(y, y + height, minimumHeight);
+            bounds = calculateBounds();
+            if(cacheSize > 0)
+                cache.put(key, bounds);
         }
-        
-        ArrayList<ArrayList<Cell>> newCells = grid.getCells();
-        
-        for(int i = 0; i < newCells.size(); i++)
+    }
+    
+    /**
+     * Creates the columns and rows of the grid from the constraints of the components.
+     * The weight of a column is the largest share of <code>weightx</code> of the
+     * components that span it, and the same goes for rows.
+     * @param input The input of the pass.
+     */
+    private void buildGrid(LayoutInput input)
+    {
+        int count = input.components.length;
+        if(columnStart.length != count)
         {
-            String line = i + ": ";
-            for(int j = 0; j < newCells.get(i).size(); j++)
-            {
-                line += "\t" + newCells.get(i).get(j).getWidth() + "|" + newCells.get(i).get(j).getHeight();
-            }
-           // System.out.println(line);
+            columnStart = new int[count];
+            columnEnd = new int[count];
+            rowStart = new int[count];
+            rowEnd = new int[count];
         }
         
-        for(OverlayComponent comp : components)
+        int[] columns = findOccupied(input.gridx, input.gridwidth);
+        int[] rows = findOccupied(input.gridy, input.gridheight);
+        
+        double[] weightsX = new double[columns.length];
+        double[] weightsY = new double[rows.length];
+        
+        for(int k = 0; k < count; k++)
         {
-            OverlayConstraints c = constraints.get(comp);
-            int x = c.gridx();
-            int y = c.gridy();
-            int width = c.gridwidth();
-            int height = c.gridheight();
-            int compWidth = 0;
-            int compHeight = 0;
-            int compX = 0;
-            int compY = 0;
+            columnStart[k] = Arrays.binarySearch(columns, input.gridx[k]);
+            columnEnd[k] = columnStart[k] + input.gridwidth[k];
+            rowStart[k] = Arrays.binarySearch(rows, input.gridy[k]);
+            rowEnd[k] = rowStart[k] + input.gridheight[k];
             
-            for(int i = 0; i < newCells.get(x).size(); i++)
-            {
-                Cell cell = newCells.get(x).get(i);
-                if(i >= y && i < y + height)
-                {
-                    compHeight += cell.getHeight();
-                }
-                if(i < y)
-                {
-                    compY += cell.getHeight();
-                }
-            }
-            
-            for(int i = 0; i < newCells.size(); i++)
-            {
-                Cell cell = newCells.get(i).get(y);
-                if(i >= x && i < x + width)
-                {
-                    compWidth += cell.getWidth();
-                }
-                if(i < x)
-                {
-                    compX += cell.getWidth();
-                }
-            }
-            
-            
-            comp.setSize(compWidth, compHeight);
-            comp.setLocation(compX + compWidth / 2 - comp.getWidth() / 2, compY + compHeight / 2 - comp.getHeight() / 2);
+            for(int i = columnStart[k]; i < columnEnd[k]; i++)
+                weightsX[i] = Math.max(input.weightx[k] / input.gridwidth[k], weightsX[i]);
             
+            for(int i = rowStart[k]; i < rowEnd[k]; i++)
+                weightsY[i] = Math.max(input.weighty[k] / input.gridheight[k], weightsY[i]);
         }
         
-        /*int totalWidth = 0, totalHeight = 0;
+        grid.setWeights(weightsX, weightsY);
         
-        for(OverlayComponent comp : components)
+        byWidth = sortBySpan(columnStart, columnEnd);
+        byHeight = sortBySpan(rowStart, rowEnd);
+        
+        long fingerprint = count;
+        for(int k = 0; k < count; k++)
         {
-            OverlayConstraints c = constraints.get(comp);
-            
-            int x = c.gridx();
-            int y = c.gridy();
-            int width = c.gridwidth();
-            int height = c.gridheight();
-            
-            totalWidth = Math.max(totalWidth, x + width);
-            totalHeight = Math.max(totalHeight, y + height);
-            requiredX.add(comp);
-            requiredY.add(comp);
+            fingerprint = mix(fingerprint, System.identityHashCode(input.components[k]));
+            fingerprint = mix(fingerprint, pack(input.gridx[k], input.gridy[k]));
+            fingerprint = mix(fingerprint, pack(input.gridwidth[k], input.gridheight[k]));
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(input.weightx[k]));
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(input.weighty[k]));
         }
+        constraintsFingerprint = fingerprint;
+    }
+    
+    /**
+     * Adds a value to a 64-bit hash, in such a way that the order of the values matters.
+     * @param hash The hash so far.
+     * @param value The value to be added.
+     * @return The new hash.
+     */
+    private static long mix(long hash, long value)
+    {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+    
+    /**
+     * Packs two values into one, the first in the high half and the second in the low half.
+     * @param high The value for the high 32 bits.
+     * @param low The value for the low 32 bits.
+     * @return Both values as one.
+     */
+    private static long pack(int high, int low)
+    {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Finds the columns or rows that are spanned by at least one component. Since
+     * a component spans consecutive columns, it's columns are also consecutive in
+     * the result.
+     * @param first The first column or row of every component.
+     * @param span The amount of columns or rows every component spans.
+     * @return The indices of the columns or rows in ascending order, without duplicates.
+     */
+    private static int[] findOccupied(int[] first, int[] span)
+    {
+        int total = 0;
+        for(int k = 0; k < span.length; k++)
+            total += span[k];
         
-        totalWeightY = getWeight(totalHeight, OverlayConstraints.GRIDY, OverlayConstraints.GRIDHEIGHT, OverlayConstraints.WEIGHTY);
-        
-        totalWeightX = getWeight(totalWidth, OverlayConstraints.GRIDX, OverlayConstraints.GRIDWIDTH, OverlayConstraints.WEIGHTX);
+        int[] occupied = new int[total];
+        int n = 0;
+        for(int k = 0; k < first.length; k++)
+            for(int i = first[k]; i < first[k] + span[k]; i++)
+                occupied[n++] = i;
         
-        //System.out.println("Initial weights: " + totalWeightY + "    " + totalWeightX);
+        Arrays.sort(occupied);
         
-        int implWidth = correctWeights(totalWidth, areaWidth, OverlayConstraints.GRIDX, OverlayConstraints.GRIDWIDTH, OverlayConstraints.WEIGHTX, finishedX);
-        int implHeight = correctWeights(totalHeight, areaHeight, OverlayConstraints.GRIDY, OverlayConstraints.GRIDHEIGHT, OverlayConstraints.WEIGHTY, finishedY);
+        int unique = 0;
+        for(int i = 0; i < occupied.length; i++)
+            if(unique == 0 || occupied[i] != occupied[unique - 1])
+                occupied[unique++] = occupied[i];
         
-        //System.out.println("1st corrected weights: " + totalWeightY + "    " + totalWeightX);
+        return Arrays.copyOf(occupied, unique);
+    }
     
-        //System.out.println("2nd corrected weights: " + totalWeightY + "    " + totalWeightX);
+    /**
+     * Orders the components by the amount of columns or rows they span. Components
+     * that span the same amount keep the order of the list of components.
+     * @param start The first column or row of every component.
+     * @param end The column or row after the last one of every component.
+     * @return The indices of the components, narrowest first.
+     */
+    private static int[] sortBySpan(int[] start, int[] end)
+    {
+        long[] keys = new long[start.length];
+        for(int k = 0; k < keys.length; k++)
+            keys[k] = ((long) (end[k] - start[k]) << 32) | k;
         
-        this.calculateGridDimensions(OverlayConstraints.GRIDY, 
-                                    totalHeight, 
-                                    OverlayConstraints.WEIGHTY, 
-                                    totalWeightY, 
-                                    OverlayConstraints.GRIDHEIGHT,
-                                    finishedY,
-                                    implHeight,
-                                    requiredY);
+        Arrays.sort(keys);
         
-        this.calculateGridDimensions(OverlayConstraints.GRIDX, 
-                                    totalWidth, 
-                                    OverlayConstraints.WEIGHTX, 
-                                    totalWeightX, 
-                                    OverlayConstraints.GRIDWIDTH,
-                                    finishedX,
-                                    implWidth,
-                                    requiredX);
+        int[] order = new int[keys.length];
+        for(int k = 0; k < keys.length; k++)
+            order[k] = (int) keys[k];
+        return order;
+    }
+    
+    /**
+     * Remembers the minimum and maximum sizes of the components, which the bounds
+     * of the components depend on.
+     * @param input The input of the pass.
+     * @return True if a size differs from the previous pass, otherwise false.
+     */
+    private boolean updateSizeLimits(LayoutInput input)
+    {
+        boolean changed = false;
+        int count = input.components.length;
         
-        setMinimumSizes(implWidth, totalWidth, finishedX, OverlayConstraints.GRIDX, OverlayConstraints.GRIDWIDTH, OverlayConstraints.WEIGHTX);
-        setMinimumSizes(implHeight, totalHeight, finishedY, OverlayConstraints.GRIDY, OverlayConstraints.GRIDHEIGHT, OverlayConstraints.WEIGHTY);
+        if(minimumWidths.length != count)
+        {
+            minimumWidths = new int[count];
+            minimumHeights = new int[count];
+            maximumWidths = new int[count];
+            maximumHeights = new int[count];
+            changed = true;
+        }
         
-        for(OverlayComponent comp : components)
+        long fingerprint = 0;
+        for(int k = 0; k < count; k++)
         {
-            OverlayConstraints c = constraints.get(comp);
-            
-            int width = 0, height = 0, x = 0, y = 0;
-
-            for(int i = 0; i < c.gridwidth(); i++)
-                if(finishedX.get(i + c.gridx()) != null)
-                    width += finishedX.get(i + c.gridx());
-
-            for(int i = 0; i < c.gridx(); i++)
-                if(finishedX.get(i) != null)
-                    x += finishedX.get(i);
-
-            for(int i = 0; i < c.gridheight(); i++)
-                if(finishedY.get(i + c.gridy()) != null)
-                    height += finishedY.get(i + c.gridy());
-
-            for(int i = 0; i < c.gridy(); i++)
-                if(finishedY.get(i) != null)
-                    y += finishedY.get(i);
+            int minimumWidth = input.minimumWidths[k];
+            int minimumHeight = input.minimumHeights[k];
+            int maximumWidth = input.maximumWidths[k];
+            int maximumHeight = input.maximumHeights[k];
             
-            if(comp instanceof OverlayButton)
-            {
-                System.out.println("@@@@@@");
-                System.out.println(width + "         " + height);
-            }
-
-            width = width - c.insets().left - c.insets().right;
-            height = height - c.insets().top - c.insets().bottom;
+            changed |= minimumWidth != minimumWidths[k] || minimumHeight != minimumHeights[k]
+                    || maximumWidth != maximumWidths[k] || maximumHeight != maximumHeights[k];
             
-            if(c.resizing())
-                comp.setSize(width, height);
-
-                comp.setLocation((int) Math.round(x + c.insets().left + width / 2.0 - comp.getWidth() / 2.0), 
-                                 (int) Math.round(y + c.insets().top + height / 2.0 - comp.getHeight() / 2.0));
+            minimumWidths[k] = minimumWidth;
+            minimumHeights[k] = minimumHeight;
+            maximumWidths[k] = maximumWidth;
+            maximumHeights[k] = maximumHeight;
             
-                
-        }*/
-    } 
-    
-    private double getWeight(int length, String direction, String dimension, String weight)
-    {    
-        try{
-            double totalWeight = 0;
-            for(int i = 0; i < length; i++)
-            {
-                double cellWeight = 0;
-
-                for(OverlayComponent comp : components)
-                {
-                    OverlayConstraints c = constraints.get(comp);
-
-                    int index = (int) c.getValue(direction);
-                    int size = (int) c.getValue(dimension);
-
-                    if(i >= index && i < index + size)
-                        cellWeight = Math.max(cellWeight, (double) c.getValue(weight) / size);
-                }
-
-                totalWeight += cellWeight;
-            }
-            return totalWeight;
-        }catch(Exception e){e.printStackTrace();return 0;}
+            fingerprint = mix(fingerprint, pack(minimumWidth, minimumHeight));
+            fingerprint = mix(fingerprint, pack(maximumWidth, maximumHeight));
+        }
+        
+        sizeFingerprint = fingerprint;
+        return changed;
     }
     
-    private int correctWeights(int length, int dimensionSize, String direction, String dimension, String weight, HashMap<Integer, Integer> target)
+    /**
+     * Calculates the bounds of every component from the solved grid. A component
+     * gets the size of the cells it spans, limited by it's own minimum and maximum
+     * size, and is centered within them.
+     * @return The x, y, width and height of every component, one after another.
+     */
+    private int[] calculateBounds()
     {
-        int implSize = dimensionSize;
-        double implWeight;
-        if(direction.equals(OverlayConstraints.GRIDX))
-             implWeight = totalWeightX;
-        else
-            implWeight = totalWeightY;
-        try{
-            for(int i = 0; i < length; i++)
-            {
-                for(OverlayComponent comp : components)
-                {
-                    OverlayConstraints c = constraints.get(comp);
-
-                    int index = (int) c.getValue(direction);
-                    int size = (int) c.getValue(dimension);
-                    
-                    int compSize;
-                    
-                    if(direction.equals(OverlayConstraints.GRIDX))
-                        compSize = comp.getMaximumWidth();
-                    else
-                        compSize = comp.getMaximumHeight();
-
-                    if(i >= index && i < index + size)
-                    {
-                        double correctedWeight = (double) c.getValue(weight) / implWeight;
-                        if(compSize < correctedWeight * implSize)
-                        {
-                            if(target.containsKey(i))
-                                target.replace(i, Math.max(target.get(i), compSize));
-                            else
-                                target.put(i, compSize);
-                            implWeight -= (double) c.getValue(weight);
-                            implSize -= compSize;
-                            
-                            if(direction.equals(OverlayConstraints.GRIDX))
-                                requiredX.remove(comp);
-                            else 
-                                requiredY.remove(comp);
-                        }
-                    }
-                }
-            }
-        }catch(Exception e){e.printStackTrace();}
-        
-        if(direction.equals(OverlayConstraints.GRIDX))
-             totalWeightX = implWeight;
-        else
-            totalWeightY = implWeight;
-        return implSize;
+        int[] bounds = new int[minimumWidths.length * 4];
+        
+        for(int k = 0; k < minimumWidths.length; k++)
+        {
+            int cellX = grid.getColumnOffset(columnStart[k]);
+            int cellY = grid.getRowOffset(rowStart[k]);
+            int cellWidth = grid.getColumnOffset(columnEnd[k]) - cellX;
+            int cellHeight = grid.getRowOffset(rowEnd[k]) - cellY;
+            
+            int width = Math.max(Math.min(cellWidth, maximumWidths[k]), minimumWidths[k]);
+            int height = Math.max(Math.min(cellHeight, maximumHeights[k]), minimumHeights[k]);
+            
+            bounds[k * 4] = cellX + cellWidth / 2 - width / 2;
+            bounds[k * 4 + 1] = cellY + cellHeight / 2 - height / 2;
+            bounds[k * 4 + 2] = width;
+            bounds[k * 4 + 3] = height;
+        }
+        
+        return bounds;
     }
     
-    private void setMinimumSizes(int totalSize, int totalCells, HashMap<Integer, Integer> target,
-                                String dimension, String dimensionSize, String dimensionWeight)
-    {
-        try{
-            for(OverlayComponent comp : components)
-            {
-                OverlayConstraints c = constraints.get(comp);
-
-                int size;
-                if(dimension.equals(OverlayConstraints.GRIDX))
-                    size = comp.getMinimumWidth();
-                else
-                    size = comp.getMinimumHeight();
-
-                if(size > 0)
-                {
-                    int index = (int) c.getValue(dimension);
-                    int length = (int) c.getValue(dimensionSize);
-                    int combinedCellSize = 0;
-                    
-                    for(int i = 0; i < length; i++)
-                        combinedCellSize += target.get(i + index);
-                    
-                    if(combinedCellSize < size)
-                    {
-                    }
-                }
-            }
-        }catch(Exception e){}
-    }
-
-    /*private int setMinimumSizes(double totalSize, int totalCells, HashMap<Integer, Integer> target,
-                                String dimension, String dimensionSize, String dimensionWeight)
-    {
-        double implSize = totalSize;
-        double implWeight;
-        
-        if(dimension.equals(OverlayConstraints.GRIDX))
-            implWeight = totalWeightX;
-        else
-            implWeight = totalWeightY;
-        
-        try{
-            for(int i = 0; i < totalCells; i++)
-            {
-                double cellWeight = 0;
-                double requiredWeight = 0;
-                double absoluteWeight = 0;
-                int requiredSize = 0;
-
-                for(OverlayComponent comp : components)
-                {
-                    OverlayConstraints c = constraints.get(comp);
-
-                    int primIndex = (int) c.getValue(dimension);
-                    int primSize = (int) c.getValue(dimensionSize);
-
-                    if(i >= primIndex && i < primIndex + primSize)
-                    {
-                        if(cellWeight < (double) c.getValue(dimensionWeight) / (int)c.getValue(dimensionSize) / implWeight)
-                        {
-                            cellWeight = (double) c.getValue(dimensionWeight) / (int)c.getValue(dimensionSize) / implWeight;
-                            absoluteWeight = (double) c.getValue(dimensionWeight) / (int)c.getValue(dimensionSize);
-                        }
-                        
-                        int size;
-                        if(dimension.equals(OverlayConstraints.GRIDX))
-                            size = comp.getMinimumWidth();
-                        else
-                            size = comp.getMinimumHeight();
-                            
-                        requiredWeight = Math.max(requiredWeight, size / implSize);
-                        requiredSize = Math.max(requiredSize, (int)Math.round(size / (double)(int) c.getValue(dimensionSize)));
-                    }
-                }
-
-                if(requiredWeight > cellWeight)
-                {
-                    if(target.get(i) != null)
-                        target.replace(i, requiredSize);
-                    else
-                        target.put(i, requiredSize);
-                    implSize -= requiredSize;
-                    implWeight -= absoluteWeight;
-                }
-            }
-        }catch(Exception e){e.printStackTrace();}
-        if(dimension.equals(OverlayConstraints.GRIDX))
-            totalWeightX = implWeight;
-        else
-            totalWeightY = implWeight;
-        
-        return (int) Math.round(implSize);
-    }*/
-    
-    private void calculateGridDimensions(String firstDirection, int firstDirSize,
-                                       String weight, double totalWeight, 
-                                       String firstDimension, HashMap<Integer, Integer> target,
-                                       int totalDimensionSize, ArrayList<OverlayComponent> required)
+    /**
+     * The key under which the bounds of a layout are remembered. It keeps the input
+     * of the pass, which is not changed after it has been captured, and two keys
+     * are only equal if their inputs hold the same components, constraints, sizes
+     * and area size. The fingerprint is only used as the hash.
+     */
+    private static final class LayoutKey
     {
-        try{
-            for(int i = 0; i < firstDirSize; i++)
-            {
-                double cellWeight = 0;
-
-                for(OverlayComponent comp : required)
-                {
-                    OverlayConstraints c = constraints.get(comp);
-
-                    int primIndex = (int) c.getValue(firstDirection);
-                    int primSize = (int) c.getValue(firstDimension);
-                    
-                    if(i >= primIndex && i < primIndex + primSize)
-                    {
-                        cellWeight = Math.max(cellWeight, (double) c.getValue(weight) / (int) c.getValue(firstDimension));                          
-                    }
-                }
-
-                double correctedWeight = cellWeight / totalWeight;
-
-                if(target.get(i) != null)
-                    target.replace(i,
-                            Math.max((int) Math.round(totalDimensionSize * correctedWeight), target.get(i)));
-                else
-                    target.put(i, (int) Math.round(totalDimensionSize * correctedWeight));
-            }
-        }catch(Exception e){e.printStackTrace();}
+        private final LayoutInput input;
+        private final long fingerprint;
+        
+        LayoutKey(LayoutInput input, long fingerprint)
+        {
+            this.input = input;
+            this.fingerprint = fingerprint;
+        }
+        
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof LayoutKey))
+                return false;
+            
+            LayoutInput other = ((LayoutKey) o).input;
+            if(input.areaWidth != other.areaWidth || input.areaHeight != other.areaHeight
+                    || input.components.length != other.components.length)
+                return false;
+            
+            for(int k = 0; k < input.components.length; k++)
+                if(input.components[k] != other.components[k])
+                    return false;
+            
+            return Arrays.equals(input.gridx, other.gridx) && Arrays.equals(input.gridy, other.gridy)
+                    && Arrays.equals(input.gridwidth, other.gridwidth) && Arrays.equals(input.gridheight, other.gridheight)
+                    && Arrays.equals(input.weightx, other.weightx) && Arrays.equals(input.weighty, other.weighty)
+                    && Arrays.equals(input.minimumWidths, other.minimumWidths)
+                    && Arrays.equals(input.minimumHeights, other.minimumHeights)
+                    && Arrays.equals(input.maximumWidths, other.maximumWidths)
+                    && Arrays.equals(input.maximumHeights, other.maximumHeights);
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(fingerprint) * 31 * 31 + input.areaWidth * 31 + input.areaHeight;
+        }
     }
-    
 }
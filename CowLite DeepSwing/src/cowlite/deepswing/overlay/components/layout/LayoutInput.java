@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Wessel.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cowlite.deepswing.overlay.components.layout;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+
+/**
+ * Everything a pass of the <code>GridBagLayout</code> depends on, copied from
+ * the components and their constraints at one moment. Once it has been captured
+ * it no longer refers to the state of the components, other than the components
+ * themselves, so the pass can be done on another thread while the components
+ * keep changing.
+ * <br>
+ * An input is filled in by <code>GridBagLayout.capture()</code> and should not
+ * be changed after it has been handed to <code>GridBagLayout.solve()</code>.
+ * 
+ * @see GridBagLayout#capture(int, int, long) 
+ * @author Wessel
+ */
+public final class LayoutInput
+{
+    /**
+     * The components with constraints, in the order of the list of components.
+     * The arrays below hold a value for every component, at the same index.
+     */
+    final OverlayComponent[] components;
+    
+    final int[] gridx, gridy, gridwidth, gridheight;
+    
+    final double[] weightx, weighty;
+    
+    final int[] minimumWidths, minimumHeights, maximumWidths, maximumHeights;
+    
+    final int areaWidth, areaHeight;
+    
+    /**
+     * The version of the constraints, which changes whenever the layout is invalidated.
+     */
+    final int version;
+    
+    final long sequence;
+    
+    LayoutInput(int count, int areaWidth, int areaHeight, int version, long sequence)
+    {
+        this.components = new OverlayComponent[count];
+        this.gridx = new int[count];
+        this.gridy = new int[count];
+        this.gridwidth = new int[count];
+        this.gridheight = new int[count];
+        this.weightx = new double[count];
+        this.weighty = new double[count];
+        this.minimumWidths = new int[count];
+        this.minimumHeights = new int[count];
+        this.maximumWidths = new int[count];
+        this.maximumHeights = new int[count];
+        this.areaWidth = areaWidth;
+        this.areaHeight = areaHeight;
+        this.version = version;
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Returns the number that was given when the input was captured.
+     * @return The sequence number of the input.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+}
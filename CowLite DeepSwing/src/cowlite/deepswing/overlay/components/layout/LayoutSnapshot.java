@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Wessel.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cowlite.deepswing.overlay.components.layout;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import cowlite.deepswing.overlay.components.OverlayContainer;
+import java.awt.Rectangle;
+
+/**
+ * The bounds of the components of a <code>GridBagLayout</code> after a single
+ * pass. A snapshot never changes, so it can be created on one thread and handed
+ * to another, which moves and resizes the components by calling <code>apply()</code>.
+ * <br>
+ * The snapshot carries the sequence number of the input it was solved from, so
+ * that the owner of the components can tell if it is still the latest one or
+ * if a newer pass is on it's way.
+ * 
+ * @see GridBagLayout#solve(LayoutInput) 
+ * @author Wessel
+ */
+public final class LayoutSnapshot
+{
+    private final OverlayComponent[] components;
+    
+    /**
+     * The x, y, width and height of every component, one after another.
+     */
+    private final int[] bounds;
+    
+    private final long sequence;
+    
+    LayoutSnapshot(OverlayComponent[] components, int[] bounds, long sequence)
+    {
+        this.components = components;
+        this.bounds = bounds;
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Returns the sequence number of the input the snapshot was solved from.
+     * @return The sequence number.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+    
+    public int getComponentCount()
+    {
+        return components.length;
+    }
+    
+    public OverlayComponent getComponent(int index)
+    {
+        return components[index];
+    }
+    
+    /**
+     * Returns the bounds a component gets when the snapshot is applied.
+     * @param index The index of the component in the snapshot.
+     * @return The location and size of the component, relative to the area it is laid out in.
+     */
+    public Rectangle getBounds(int index)
+    {
+        return new Rectangle(bounds[index * 4], bounds[index * 4 + 1], bounds[index * 4 + 2], bounds[index * 4 + 3]);
+    }
+    
+    /**
+     * Moves and resizes the components. This should be called on the thread that
+     * owns the components.
+     */
+    public void apply()
+    {
+        apply(null);
+    }
+    
+    /**
+     * Moves and resizes the components that still lie in the given container.
+     * Components that have been removed from it since the input was captured
+     * are left alone. This should be called on the thread that owns the components.
+     * @param container The container of the components, or null to place all of them.
+     */
+    public void apply(OverlayContainer container)
+    {
+        for(int k = 0; k < components.length; k++)
+        {
+            OverlayComponent comp = components[k];
+            if(container != null && comp.getContainer() != container)
+                continue;
+            
+            comp.setSize(bounds[k * 4 + 2], bounds[k * 4 + 3]);
+            comp.setLocation(bounds[k * 4], bounds[k * 4 + 1]);
+        }
+    }
+}
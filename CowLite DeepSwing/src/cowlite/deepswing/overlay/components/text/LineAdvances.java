@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.components.text;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.util.HashMap;
+
+/**
+ * This class knows how far every character of a line lies from the start of
+ * the line, so that the position of the cursor can be found without measuring
+ * parts of the line over and over again.
+ *
+ * <h2>Advances</h2>
+ * For every line an array is kept in which element <code>i</code> holds the width
+ * of the first <code>i</code> characters of the line. The array is calculated
+ * the first time the line is needed, in a single pass over the line, and is kept
+ * until the line is edited or the font changes. Finding the character at a given
+ * x-coordinate is then a binary search in the array.
+ *
+ * @author Wessel Jongkind
+ */
+public class LineAdvances
+{
+    private final TextDocument document;
+
+    /**
+     * The advances of every line that has been measured, by the index of the line.
+     */
+    private final HashMap<Integer, int[]> advances = new HashMap<>();
+
+    /**
+     * The font with which the lines have been measured.
+     */
+    private Font font;
+
+    /**
+     * The render context with which the lines have been measured.
+     */
+    private FontRenderContext context;
+
+    /**
+     * Constructs a new set of advances for the lines of a document.
+     * @param document The document of which the lines are measured.
+     */
+    public LineAdvances(TextDocument document)
+    {
+        this.document = document;
+    }
+
+    /**
+     * Returns the advances of a line. Element <code>i</code> of the array holds
+     * the width of the first <code>i</code> characters, so the array is one
+     * element longer than the line. The array should not be changed.
+     * @param line The index of the line.
+     * @param metrics The metrics of the font with which the line is painted.
+     * @return The advances of the line.
+     */
+    public int[] getAdvances(int line, FontMetrics metrics)
+    {
+        if(!metrics.getFont().equals(font) || !metrics.getFontRenderContext().equals(context))
+        {
+            advances.clear();
+            font = metrics.getFont();
+            context = metrics.getFontRenderContext();
+        }
+
+        int[] result = advances.get(line);
+        if(result == null)
+        {
+            result = measure(line);
+            advances.put(line, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the width of the characters of a line before the given index.
+     * @param line The index of the line.
+     * @param index The index of a character on the line, up to the length of the line.
+     * @param metrics The metrics of the font with which the line is painted.
+     * @return The distance from the start of the line to the character.
+     */
+    public int getX(int line, int index, FontMetrics metrics)
+    {
+        return getAdvances(line, metrics)[index];
+    }
+
+    /**
+     * Finds the position between two characters that is closest to the given
+     * x-coordinate.
+     * @param line The index of the line.
+     * @param x The distance from the start of the line.
+     * @param metrics The metrics of the font with which the line is painted.
+     * @return The index of the character after the position, which is the length of
+     *         the line if the position lies after the last character.
+     */
+    public int getIndexAt(int line, int x, FontMetrics metrics)
+    {
+        int[] a = getAdvances(line, metrics);
+
+        int low = 0;
+        int high = a.length - 1;
+        while(low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if(a[middle] <= x)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        if(low + 1 < a.length && x - a[low] > a[low + 1] - x)
+            return low + 1;
+        return low;
+    }
+
+    /**
+     * Forgets the advances of a line of which the text has changed, without
+     * adding or removing lines.
+     * @param line The index of the line.
+     */
+    public void lineChanged(int line)
+    {
+        advances.remove(line);
+    }
+
+    /**
+     * Forgets the advances of all lines, for example because lines have been
+     * added or removed.
+     */
+    public void clear()
+    {
+        advances.clear();
+    }
+
+    /**
+     * Measures a line with the current font and render context.
+     * @param line The index of the line.
+     * @return The advances of the line.
+     */
+    private int[] measure(int line)
+    {
+        int start = document.getLineStart(line);
+        int length = document.getLineEnd(line) - start;
+
+        int[] result = new int[length + 1];
+        if(length == 0)
+            return result;
+
+        char[] chars = new char[length];
+        document.getChars(start, length, chars, 0);
+
+        float[] positions = font.createGlyphVector(context, chars).getGlyphPositions(0, length + 1, null);
+        for(int i = 1; i <= length; i++)
+            result[i] = Math.round(positions[i * 2]);
+        return result;
+    }
+}
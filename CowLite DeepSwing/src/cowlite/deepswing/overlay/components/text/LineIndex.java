@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.components.text;
+
+/**
+ * This class keeps track of the offset at which every line of a <code>TextDocument</code>
+ * starts.
+ *
+ * <h2>Gap</h2>
+ * The offsets are stored in an array with a gap at the line that was edited last.
+ * Lines before the gap store their offset from the start of the document, and lines
+ * after the gap store their distance to the end of the document. Inserting or
+ * removing text at the gap therefore does not change any stored value except for
+ * the lines that are added or removed. Editing somewhere else first moves the gap
+ * there, which only touches the lines between the old and the new position.
+ *
+ * @author Wessel Jongkind
+ */
+class LineIndex
+{
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The offsets of the lines. The entries from <code>gapStart</code> up to
+     * <code>gapEnd</code> are not used.
+     */
+    private int[] starts = new int[MIN_CAPACITY];
+
+    private int gapStart;
+
+    private int gapEnd;
+
+    /**
+     * The length of the document, which is needed to convert the distance to the
+     * end of the document back to an offset.
+     */
+    private int length;
+
+    /**
+     * Constructs a new index of an empty document, which has a single line.
+     */
+    LineIndex()
+    {
+        clear();
+    }
+
+    /**
+     * Resets the index to that of an empty document.
+     */
+    void clear()
+    {
+        if(starts.length > MIN_CAPACITY)
+            starts = new int[MIN_CAPACITY];
+
+        starts[0] = 0;
+        gapStart = 1;
+        gapEnd = starts.length;
+        length = 0;
+    }
+
+    int getLineCount()
+    {
+        return gapStart + starts.length - gapEnd;
+    }
+
+    /**
+     * Returns the offset at which a line starts.
+     * @param line The index of the line.
+     * @return The offset of the first character of the line.
+     */
+    int getLineStart(int line)
+    {
+        if(line < gapStart)
+            return starts[line];
+        return length - starts[line + gapEnd - gapStart];
+    }
+
+    /**
+     * Finds the line that contains the character at the given offset. An offset
+     * directly after a line break belongs to the next line.
+     * @param offset The offset in the document.
+     * @return The index of the line.
+     */
+    int getLineOfOffset(int offset)
+    {
+        int low = 0;
+        int high = getLineCount() - 1;
+
+        while(low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if(getLineStart(middle) <= offset)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        return low;
+    }
+
+    /**
+     * Updates the index after text has been inserted into the document.
+     * @param offset The offset at which the text has been inserted.
+     * @param text The text that has been inserted.
+     */
+    void inserted(int offset, CharSequence text)
+    {
+        moveGap(getLineOfOffset(offset) + 1);
+        length += text.length();
+
+        for(int i = 0; i < text.length(); i++)
+        {
+            if(text.charAt(i) != '\n')
+                continue;
+
+            ensureGap();
+            starts[gapStart++] = offset + i + 1;
+        }
+    }
+
+    /**
+     * Updates the index after a single character has been inserted into the document.
+     * @param offset The offset at which the character has been inserted.
+     * @param c The character that has been inserted.
+     */
+    void inserted(int offset, char c)
+    {
+        moveGap(getLineOfOffset(offset) + 1);
+        length++;
+
+        if(c != '\n')
+            return;
+
+        ensureGap();
+        starts[gapStart++] = offset + 1;
+    }
+
+    /**
+     * Updates the index after text has been removed from the document. Every line
+     * of which the line break has been removed is merged with the line before it.
+     * @param offset The offset at which the text has been removed.
+     * @param count The amount of characters that have been removed.
+     */
+    void removed(int offset, int count)
+    {
+        moveGap(getLineOfOffset(offset) + 1);
+
+        int end = offset + count;
+        while(gapEnd < starts.length && length - starts[gapEnd] <= end)
+            gapEnd++;
+
+        length -= count;
+    }
+
+    /**
+     * Moves the gap so that the given amount of lines lies before it.
+     * @param lines The amount of lines that should lie before the gap.
+     */
+    private void moveGap(int lines)
+    {
+        while(gapStart > lines)
+        {
+            gapStart--;
+            gapEnd--;
+            starts[gapEnd] = length - starts[gapStart];
+        }
+
+        while(gapStart < lines)
+        {
+            starts[gapStart] = length - starts[gapEnd];
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    /**
+     * Makes sure there is room for at least one more line in the gap.
+     */
+    private void ensureGap()
+    {
+        if(gapEnd > gapStart)
+            return;
+
+        int after = starts.length - gapEnd;
+        int[] grown = new int[starts.length * 2];
+        System.arraycopy(starts, 0, grown, 0, gapStart);
+        System.arraycopy(starts, gapEnd, grown, grown.length - after, after);
+
+        gapEnd = grown.length - after;
+        starts = grown;
+    }
+}
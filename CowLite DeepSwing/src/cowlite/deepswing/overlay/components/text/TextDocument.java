@@ -0,0 +1,314 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.components.text;
+
+/**
+ * This class holds the text of an <code>OverlayTextField</code>. Lines are
+ * separated by <code>'\n'</code>, and a document always has at least one line.
+ *
+ * <h2>Gap buffer</h2>
+ * The characters are stored in a single array with a gap at the place that was
+ * edited last. Typing or removing characters at the gap only changes the size of
+ * the gap, so editing near the cursor takes constant time no matter how large
+ * the document is. Editing somewhere else first moves the gap there, which only
+ * copies the characters between the old and the new position. Inserting a large
+ * piece of text, such as a paste, takes time proportional to it's length.
+ *
+ * <h2>Lines</h2>
+ * The offset at which every line starts is kept up to date while the document is
+ * being edited, so that finding a line or the line of an offset never requires
+ * scanning the text.
+ *
+ * <h2>Threads</h2>
+ * This class is not thread safe. It should only be used on the thread that
+ * handles the input of the overlay.
+ *
+ * @author Wessel Jongkind
+ */
+public class TextDocument
+{
+    private static final int MIN_GAP = 64;
+
+    private char[] buffer = new char[MIN_GAP];
+
+    private int gapStart = 0;
+
+    private int gapEnd = MIN_GAP;
+
+    private final LineIndex lines = new LineIndex();
+
+    /**
+     * Constructs a new empty document.
+     */
+    public TextDocument()
+    {
+    }
+
+    /**
+     * Constructs a new document with the given text.
+     * @param text The text of the document, in which lines are separated by <code>'\n'</code>.
+     */
+    public TextDocument(CharSequence text)
+    {
+        insert(0, text);
+    }
+
+    /**
+     * Returns the amount of characters in the document, including line breaks.
+     * @return The length of the document.
+     */
+    public int length()
+    {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    public char charAt(int offset)
+    {
+        checkOffset(offset, length() - 1);
+        return offset < gapStart ? buffer[offset] : buffer[offset + gapEnd - gapStart];
+    }
+
+    /**
+     * Inserts text into the document.
+     * @param offset The offset at which the text should be inserted.
+     * @param text The text to be inserted, in which lines are separated by <code>'\n'</code>.
+     */
+    public void insert(int offset, CharSequence text)
+    {
+        checkOffset(offset, length());
+
+        int count = text.length();
+        if(count == 0)
+            return;
+
+        moveGap(offset);
+        ensureGap(count);
+
+        for(int i = 0; i < count; i++)
+            buffer[gapStart + i] = text.charAt(i);
+        gapStart += count;
+
+        lines.inserted(offset, text);
+    }
+
+    /**
+     * Inserts a single character into the document.
+     * @param offset The offset at which the character should be inserted.
+     * @param c The character to be inserted.
+     */
+    public void insert(int offset, char c)
+    {
+        checkOffset(offset, length());
+
+        moveGap(offset);
+        ensureGap(1);
+        buffer[gapStart++] = c;
+
+        lines.inserted(offset, c);
+    }
+
+    /**
+     * Removes text from the document. Lines of which the line break is removed
+     * are merged with the next line.
+     * @param offset The offset of the first character to be removed.
+     * @param count The amount of characters to be removed.
+     */
+    public void delete(int offset, int count)
+    {
+        checkOffset(offset, length());
+        checkOffset(offset + count, length());
+
+        if(count <= 0)
+            return;
+
+        moveGap(offset);
+        gapEnd += count;
+
+        lines.removed(offset, count);
+    }
+
+    /**
+     * Replaces all text of the document.
+     * @param text The new text of the document.
+     */
+    public void setText(CharSequence text)
+    {
+        if(buffer.length > MIN_GAP * 2)
+            buffer = new char[MIN_GAP];
+        gapStart = 0;
+        gapEnd = buffer.length;
+        lines.clear();
+
+        insert(0, text);
+    }
+
+    public int getLineCount()
+    {
+        return lines.getLineCount();
+    }
+
+    /**
+     * Returns the offset of the first character of a line.
+     * @param line The index of the line.
+     * @return The offset at which the line starts.
+     */
+    public int getLineStart(int line)
+    {
+        checkLine(line);
+        return lines.getLineStart(line);
+    }
+
+    /**
+     * Returns the offset directly after the last character of a line, which is
+     * the offset of it's line break or the end of the document.
+     * @param line The index of the line.
+     * @return The offset at which the line ends.
+     */
+    public int getLineEnd(int line)
+    {
+        checkLine(line);
+        if(line + 1 < lines.getLineCount())
+            return lines.getLineStart(line + 1) - 1;
+        return length();
+    }
+
+    /**
+     * Returns the amount of characters on a line, without the line break.
+     * @param line The index of the line.
+     * @return The length of the line.
+     */
+    public int getLineLength(int line)
+    {
+        return getLineEnd(line) - getLineStart(line);
+    }
+
+    /**
+     * Finds the line that contains the given offset. An offset directly after a
+     * line break belongs to the next line.
+     * @param offset The offset in the document.
+     * @return The index of the line.
+     */
+    public int getLineOfOffset(int offset)
+    {
+        checkOffset(offset, length());
+        return lines.getLineOfOffset(offset);
+    }
+
+    /**
+     * Returns the text of a line, without the line break.
+     * @param line The index of the line.
+     * @return The text of the line.
+     */
+    public String getLine(int line)
+    {
+        int start = getLineStart(line);
+        return getText(start, getLineEnd(line) - start);
+    }
+
+    /**
+     * Returns a part of the text of the document.
+     * @param offset The offset of the first character.
+     * @param count The amount of characters.
+     * @return The text.
+     */
+    public String getText(int offset, int count)
+    {
+        char[] chars = new char[count];
+        getChars(offset, count, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Copies a part of the text of the document into an array, without creating
+     * any objects.
+     * @param offset The offset of the first character.
+     * @param count The amount of characters.
+     * @param destination The array to copy the characters into.
+     * @param position The index in the array at which the first character is stored.
+     */
+    public void getChars(int offset, int count, char[] destination, int position)
+    {
+        checkOffset(offset, length());
+        checkOffset(offset + count, length());
+
+        int before = Math.max(Math.min(gapStart - offset, count), 0);
+        if(before > 0)
+            System.arraycopy(buffer, offset, destination, position, before);
+
+        int after = count - before;
+        if(after > 0)
+            System.arraycopy(buffer, offset + before + gapEnd - gapStart, destination, position + before, after);
+    }
+
+    /**
+     * Returns all text of the document.
+     * @return The text, in which lines are separated by <code>'\n'</code>.
+     */
+    @Override
+    public String toString()
+    {
+        return getText(0, length());
+    }
+
+    /**
+     * Moves the gap to the given offset.
+     * @param offset The offset at which the gap should start.
+     */
+    private void moveGap(int offset)
+    {
+        if(offset < gapStart)
+        {
+            int count = gapStart - offset;
+            System.arraycopy(buffer, offset, buffer, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        }
+        else if(offset > gapStart)
+        {
+            int count = offset - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * Makes sure the gap can hold at least the given amount of characters. If it
+     * has to grow then the buffer is at least doubled, so that growing takes
+     * constant time on average.
+     * @param count The amount of characters that are about to be inserted.
+     */
+    private void ensureGap(int count)
+    {
+        if(gapEnd - gapStart >= count)
+            return;
+
+        int length = length();
+        int capacity = Math.max(buffer.length * 2, length + count + MIN_GAP);
+        char[] grown = new char[capacity];
+
+        int after = buffer.length - gapEnd;
+        System.arraycopy(buffer, 0, grown, 0, gapStart);
+        System.arraycopy(buffer, gapEnd, grown, capacity - after, after);
+
+        gapEnd = capacity - after;
+        buffer = grown;
+    }
+
+    private void checkOffset(int offset, int max)
+    {
+        if(offset < 0 || offset > max)
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside of the document, which has a length of " + length() + ".");
+    }
+
+    private void checkLine(int line)
+    {
+        if(line < 0 || line >= lines.getLineCount())
+            throw new IndexOutOfBoundsException("Line " + line + " does not exist, the document has " + lines.getLineCount() + " lines.");
+    }
+}
@@ -9,7 +9,9 @@ package cowlite.deepswing.overlay.core;
 
 import cowlite.deepswing.overlay.components.OverlayComponent;
 import java.awt.Color;
+import java.awt.Point;
 import java.util.ArrayList;
+import org.jnativehook.NativeHookException;
 
 /**
  *
@@ -83,4 +85,176 @@ public class COverlay
         manager.repaint();
     }
     
+    /**
+     * Lets a dedicated thread drive the frames of the overlay at a fixed frame
+     * rate instead of Swing. The components are still painted on the event
+     * dispatch thread, which owns them, but pacing the frames, showing them and
+     * synchronizing with the display no longer take time on it.
+     * The overlay has to be visible before active rendering can be started.
+     * @param frameRate The amount of frames that should be painted every second.
+     */
+    public void startActiveRendering(int frameRate)
+    {
+        manager.startActiveRendering(frameRate);
+    }
+    
+    /**
+     * Stops the thread that paints the overlay, after which Swing paints
+     * the overlay again.
+     */
+    public void stopActiveRendering()
+    {
+        manager.stopActiveRendering();
+    }
+    
+    public boolean isActiveRendering()
+    {
+        return manager.isActiveRendering();
+    }
+    
+    /**
+     * Sets the maximum amount of frames that are painted every second. Repaint
+     * requests that arrive between two frames are combined into a single frame.
+     * @param frameRate The maximum amount of frames per second.
+     */
+    public void setMaximumFrameRate(int frameRate)
+    {
+        manager.setMaximumFrameRate(frameRate);
+    }
+    
+    /**
+     * Enables or disables painting on demand. By default the overlay only gets
+     * painted when one of it's components has changed, so an idle overlay costs
+     * nothing. When disabled, the overlay gets painted at the maximum frame rate
+     * at all times.
+     * @see #setMaximumFrameRate(int) 
+     * @param onDemand True if the overlay should only be painted when it has changed, otherwise false.
+     */
+    public void setRenderOnDemand(boolean onDemand)
+    {
+        manager.setRenderOnDemand(onDemand);
+    }
+    
+    /**
+     * Starts listening to the keyboard and mouse of the whole system, with
+     * ctrl + shift + O as the hotkey that toggles wether the overlay is focusable.
+     * @see #enableGlobalInput(int, int) 
+     * @throws NativeHookException If the native hook could not be registered on this system.
+     */
+    public void enableGlobalInput() throws NativeHookException
+    {
+        enableGlobalInput(GlobalInputHook.DEFAULT_TOGGLE_KEY, GlobalInputHook.DEFAULT_TOGGLE_MODIFIERS);
+    }
+    
+    /**
+     * Starts listening to the keyboard and mouse of the whole system. Pressing the
+     * hotkey anywhere makes the overlay focusable, or not focusable if it already
+     * was. While the overlay is focussed but it's window did not get keyboard focus
+     * key events are still passed on to the components. The location of the cursor
+     * is tracked at most once per frame, also while the overlay is not focussed.
+     * Global input is disabled by default.
+     * @param toggleKey The native key code of the hotkey, such as <code>NativeKeyEvent.VC_F12</code>.
+     * @param toggleModifiers The modifiers of the hotkey, such as <code>NativeInputEvent.CTRL_MASK</code>, or 0.
+     * @throws NativeHookException If the native hook could not be registered on this system.
+     */
+    public void enableGlobalInput(int toggleKey, int toggleModifiers) throws NativeHookException
+    {
+        manager.enableGlobalInput(toggleKey, toggleModifiers);
+    }
+    
+    /**
+     * Stops listening to the keyboard and mouse of the whole system.
+     */
+    public void disableGlobalInput()
+    {
+        manager.disableGlobalInput();
+    }
+    
+    public boolean isGlobalInputEnabled()
+    {
+        return manager.isGlobalInputEnabled();
+    }
+    
+    /**
+     * Returns the last known location of the cursor. The cursor is only tracked
+     * while global input is enabled.
+     * @return The location of the cursor relative to the overlay's origin, or null
+     *         if it is not being tracked.
+     */
+    public Point getCursorLocation()
+    {
+        return manager.getContent().getCursorLocation();
+    }
+    
+    /**
+     * Returns the topmost component below the cursor, for example to highlight it
+     * while the overlay is not focussed. This should be called on the event
+     * dispatch thread.
+     * @see #getCursorLocation() 
+     * @return The component below the cursor, or null if there is none or the
+     *         cursor is not being tracked.
+     */
+    public OverlayComponent getComponentAtCursor()
+    {
+        return manager.getContent().getComponentAtCursor();
+    }
+    
+    /**
+     * Returns the component that receives key events, which is the focussed
+     * component that lies deepest in the component tree.
+     * @return The focus owner, or null if no component is focussed.
+     */
+    public OverlayComponent getFocusOwner()
+    {
+        return manager.getContent().getFocusManager().getFocusOwner();
+    }
+    
+    /**
+     * Gives the focus to a component, so that it receives the key events of the
+     * overlay. The old focus owner loses focus.
+     * @param comp The component that should receive key events.
+     */
+    public void requestFocus(OverlayComponent comp)
+    {
+        manager.getContent().getFocusManager().transferFocus(comp);
+    }
+    
+    /**
+     * Moves the focus to the next focus traversable component, as if tab was pressed.
+     * @see OverlayComponent#setFocusTraversable(boolean) 
+     */
+    public void focusNext()
+    {
+        manager.getContent().getFocusManager().focusNext();
+    }
+    
+    /**
+     * Moves the focus to the previous focus traversable component, as if shift + tab was pressed.
+     * @see OverlayComponent#setFocusTraversable(boolean) 
+     */
+    public void focusPrevious()
+    {
+        manager.getContent().getFocusManager().focusPrevious();
+    }
+    
+    /**
+     * Sets wether key events are passed on to the panels that contain the focus
+     * owner, until one of them consumes the event. It is enabled by default.
+     * @param bubbling True if key events should bubble up, otherwise false.
+     */
+    public void setKeyEventBubbling(boolean bubbling)
+    {
+        manager.getContent().getFocusManager().setBubbling(bubbling);
+    }
+    
+    /**
+     * Sets wether tab and shift + tab move the focus between components. It is
+     * enabled by default.
+     * @param enabled True if the traversal keys move the focus, otherwise false.
+     */
+    public void setFocusTraversalKeysEnabled(boolean enabled)
+    {
+        manager.getContent().getFocusManager().setTraversalKeysEnabled(enabled);
+    }
+    
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.core;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import cowlite.deepswing.overlay.components.OverlayContainer;
+import cowlite.deepswing.overlay.components.OverlayPanel;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class decides which component receives the key events of the overlay.
+ *
+ * <h2>Focus owner</h2>
+ * Components become focussed when they are clicked, and several components can
+ * be focussed at the same time, such as a panel and the text field inside it. The
+ * focus owner is the focussed component that lies deepest in the component tree.
+ * If several components at the same level contain focus then the topmost one
+ * wins. The owner is only looked up again after the focus of a component has
+ * changed, so typing costs a single dispatch rather than a walk of the tree.
+ *
+ * <h2>Bubbling</h2>
+ * Key events are first passed on to the focus owner and then to each of the
+ * panels that contain it, up to the root, until one of them consumes the event.
+ * Bubbling can be disabled, after which only the focus owner receives key events.
+ *
+ * <h2>Focus traversal</h2>
+ * Pressing tab moves focus to the next component that is focus traversable, and
+ * shift + tab moves it to the previous one. Components are visited in the order
+ * in which they are painted.
+ *
+ * @see OverlayComponent#getFocusOwner()
+ * @see OverlayComponent#setFocusTraversable(boolean)
+ * @author Wessel Jongkind
+ */
+class FocusManager
+{
+    private final OverlayRoot root;
+
+    /**
+     * The component that receives key events. It is only valid while <code>ownerValid</code> is true.
+     */
+    private OverlayComponent owner;
+
+    /**
+     * False if the focus of a component has changed since the owner was looked up.
+     */
+    private boolean ownerValid = false;
+
+    /**
+     * True if key events are passed on to the ancestors of the focus owner as well.
+     */
+    private boolean bubbling = true;
+
+    /**
+     * True if tab and shift + tab move the focus to another component.
+     */
+    private boolean traversalKeysEnabled = true;
+
+    /**
+     * Constructs a new focus manager for the components on the given root.
+     * @param root The root of the overlay.
+     */
+    FocusManager(OverlayRoot root)
+    {
+        this.root = root;
+    }
+
+    /**
+     * Notifies the focus manager that the focus of a component has changed, so
+     * that the focus owner is looked up again before the next key event.
+     */
+    void invalidate()
+    {
+        ownerValid = false;
+        owner = null;
+    }
+
+    /**
+     * Returns the component that receives key events.
+     * @return The focus owner, or null if no component on the overlay is focussed.
+     */
+    OverlayComponent getFocusOwner()
+    {
+        if(!ownerValid)
+        {
+            owner = findFocusOwner();
+            ownerValid = true;
+        }
+        return owner;
+    }
+
+    /**
+     * Looks up the focus owner below the topmost component on the root that
+     * contains focus.
+     * @return The focus owner, or null if no component is focussed.
+     */
+    private OverlayComponent findFocusOwner()
+    {
+        List<OverlayComponent> components = root.getOverlayComponents();
+
+        OverlayComponent topmost = null;
+        int topIndex = -1;
+
+        for(OverlayComponent comp : root.getFocusHolders())
+        {
+            int i = components.indexOf(comp);
+            if(i > topIndex)
+            {
+                topmost = comp;
+                topIndex = i;
+            }
+        }
+
+        return topmost == null ? null : topmost.getFocusOwner();
+    }
+
+    /**
+     * Passes a key event on to the focus owner and, while bubbling is enabled, to
+     * it's ancestors until the event has been consumed. Tab and shift + tab move the
+     * focus instead of being passed on.
+     * @param e The key event.
+     */
+    void dispatch(KeyEvent e)
+    {
+        if(traversalKeysEnabled && e.getID() == KeyEvent.KEY_PRESSED && e.getKeyCode() == KeyEvent.VK_TAB)
+        {
+            if(e.isShiftDown())
+                focusPrevious();
+            else
+                focusNext();
+            e.consume();
+            return;
+        }
+
+        for(OverlayComponent target = getFocusOwner(); target != null; target = getParent(target))
+        {
+            switch(e.getID())
+            {
+                case KeyEvent.KEY_PRESSED:  target.keyPressed(e);  break;
+                case KeyEvent.KEY_RELEASED: target.keyReleased(e); break;
+                case KeyEvent.KEY_TYPED:    target.keyTyped(e);    break;
+            }
+
+            if(!bubbling || e.isConsumed())
+                return;
+        }
+    }
+
+    /**
+     * Moves the focus to the next focus traversable component, after the focus
+     * owner. After the last component the first one is focussed again.
+     */
+    void focusNext()
+    {
+        traverse(1);
+    }
+
+    /**
+     * Moves the focus to the previous focus traversable component, before the
+     * focus owner. Before the first component the last one is focussed again.
+     */
+    void focusPrevious()
+    {
+        traverse(-1);
+    }
+
+    private void traverse(int direction)
+    {
+        ArrayList<OverlayComponent> candidates = new ArrayList<>();
+        collectTraversable(root.getOverlayComponents(), candidates);
+        if(candidates.isEmpty())
+            return;
+
+        int current = candidates.indexOf(getFocusOwner());
+        int next;
+        if(current == -1)
+            next = direction > 0 ? 0 : candidates.size() - 1;
+        else
+            next = Math.floorMod(current + direction, candidates.size());
+
+        transferFocus(candidates.get(next));
+    }
+
+    /**
+     * Collects all focus traversable components in the order in which they are painted.
+     * @param components The components to be searched, including their descendants.
+     * @param candidates The list to which the focus traversable components are added.
+     */
+    private void collectTraversable(List<OverlayComponent> components, List<OverlayComponent> candidates)
+    {
+        for(OverlayComponent comp : components)
+        {
+            if(comp.isFocusTraversable())
+                candidates.add(comp);
+            if(comp instanceof OverlayPanel)
+                collectTraversable(((OverlayPanel) comp).getComponents(), candidates);
+        }
+    }
+
+    /**
+     * Makes the given component the focus owner. The old focus owner and those of
+     * it's ancestors that are not also ancestors of the new owner lose focus.
+     * @param target The component that should receive key events.
+     */
+    void transferFocus(OverlayComponent target)
+    {
+        for(OverlayComponent comp = getFocusOwner(); comp != null; comp = getParent(comp))
+            if(!isAncestor(comp, target))
+                comp.setFocussed(false);
+
+        target.setFocussed(true);
+        invalidate();
+    }
+
+    /**
+     * Tells wether a component is the given component or one of it's ancestors.
+     * @param ancestor The possible ancestor.
+     * @param comp The component.
+     * @return True if <code>ancestor</code> contains <code>comp</code> or is <code>comp</code>, otherwise false.
+     */
+    private static boolean isAncestor(OverlayComponent ancestor, OverlayComponent comp)
+    {
+        for(OverlayComponent c = comp; c != null; c = getParent(c))
+            if(c == ancestor)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the panel that contains the given component.
+     * @param comp The component.
+     * @return The container of the component, or null if it lies directly on the root.
+     */
+    private static OverlayComponent getParent(OverlayComponent comp)
+    {
+        OverlayContainer container = comp.getContainer();
+        return container instanceof OverlayComponent ? (OverlayComponent) container : null;
+    }
+
+    /**
+     * Sets wether key events are passed on to the ancestors of the focus owner
+     * until one of them consumes the event. It is enabled by default.
+     * @param bubbling True if key events should bubble up, otherwise false.
+     */
+    void setBubbling(boolean bubbling)
+    {
+        this.bubbling = bubbling;
+    }
+
+    boolean isBubbling()
+    {
+        return bubbling;
+    }
+
+    /**
+     * Sets wether tab and shift + tab move the focus to another component. It is
+     * enabled by default.
+     * @param enabled True if the traversal keys move the focus, otherwise false.
+     */
+    void setTraversalKeysEnabled(boolean enabled)
+    {
+        this.traversalKeysEnabled = enabled;
+    }
+
+    boolean isTraversalKeysEnabled()
+    {
+        return traversalKeysEnabled;
+    }
+}
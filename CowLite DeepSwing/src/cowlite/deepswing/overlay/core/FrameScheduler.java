@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.core;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.TimeUnit;
+import javax.swing.Timer;
+
+/**
+ * This class decides when the overlay gets painted. Any amount of repaint requests
+ * that arrive between two frames are combined into a single frame, and frames are
+ * never painted more often than the maximum frame rate allows.
+ *
+ * <h2>Idle mode</h2>
+ * By default frames are only painted on demand, which means that nothing happens
+ * as long as nothing requests a repaint. If painting on demand is disabled then a
+ * frame is painted every tick, whether something has changed or not.
+ *
+ * <h2>Painting frames</h2>
+ * When Swing paints the overlay a frame is started on the event dispatch thread by a
+ * <code>javax.swing.Timer</code>. When the overlay is painted by a <code>RenderThread</code>
+ * the timer is not used; instead the thread waits for a frame with <code>awaitFrame()</code>.
+ *
+ * @author Wessel Jongkind
+ */
+class FrameScheduler implements ActionListener
+{
+    /**
+     * The default maximum amount of frames per second.
+     */
+    public static final int DEFAULT_FRAME_RATE = 60;
+
+    /**
+     * The task that paints a frame when Swing paints the overlay.
+     */
+    private final Runnable frame;
+
+    /**
+     * The timer that starts a frame on the event dispatch thread.
+     */
+    private final Timer timer;
+
+    /**
+     * The minimum amount of nanoseconds between the start of two frames.
+     */
+    private long framePeriod;
+
+    /**
+     * The moment at which the last frame was started, in nanoseconds.
+     */
+    private long lastFrame;
+
+    /**
+     * True if frames should only be painted when a repaint has been requested.
+     */
+    private boolean onDemand = true;
+
+    /**
+     * True if a repaint has been requested since the last frame.
+     */
+    private boolean invalidated = false;
+
+    /**
+     * True if the timer has been started but has not fired yet.
+     */
+    private boolean scheduled = false;
+
+    /**
+     * True if frames are painted by a <code>RenderThread</code> rather than by the timer.
+     */
+    private boolean threadDriven = false;
+
+    /**
+     * Constructs a new scheduler that paints on demand at no more than
+     * <code>DEFAULT_FRAME_RATE</code> frames per second.
+     * @see #DEFAULT_FRAME_RATE
+     * @param frame The task that paints a frame on the event dispatch thread.
+     */
+    public FrameScheduler(Runnable frame)
+    {
+        this.frame = frame;
+        this.timer = new Timer(0, this);
+        this.timer.setRepeats(false);
+        this.lastFrame = System.nanoTime();
+        setFrameRate(DEFAULT_FRAME_RATE);
+    }
+
+    /**
+     * Sets the maximum amount of frames that are painted every second. Values
+     * lower than 1 are treated as 1.
+     * @param frameRate The maximum amount of frames per second.
+     */
+    public synchronized void setFrameRate(int frameRate)
+    {
+        this.framePeriod = TimeUnit.SECONDS.toNanos(1) / Math.max(frameRate, 1);
+    }
+
+    /**
+     * Enables or disables painting on demand. If it is disabled then a frame gets
+     * painted every tick, even if nothing has requested a repaint.
+     * @param onDemand True if frames should only be painted when requested, otherwise false.
+     */
+    public synchronized void setOnDemand(boolean onDemand)
+    {
+        this.onDemand = onDemand;
+        if(!onDemand)
+            invalidate();
+    }
+
+    /**
+     * Tells the scheduler wether frames are painted by a <code>RenderThread</code>.
+     * While they are, the timer is stopped and the thread waits for frames with
+     * <code>awaitFrame()</code>.
+     * @param threadDriven True if a <code>RenderThread</code> paints the frames, otherwise false.
+     */
+    public synchronized void setThreadDriven(boolean threadDriven)
+    {
+        this.threadDriven = threadDriven;
+        timer.stop();
+        scheduled = false;
+
+        if(threadDriven)
+            notifyAll();
+        else if(invalidated || !onDemand)
+            schedule();
+    }
+
+    public synchronized long getFramePeriod()
+    {
+        return framePeriod;
+    }
+
+    public synchronized boolean isOnDemand()
+    {
+        return onDemand;
+    }
+
+    /**
+     * Requests a frame. If a frame has already been requested then this method has
+     * no further effect, so any amount of requests before the next frame result in
+     * a single frame.
+     */
+    public synchronized void invalidate()
+    {
+        invalidated = true;
+
+        if(threadDriven)
+            notifyAll();
+        else
+            schedule();
+    }
+
+    /**
+     * Starts the timer so that it fires once the frame period since the last
+     * frame has passed. Nothing happens if the timer has already been started.
+     */
+    private void schedule()
+    {
+        if(scheduled)
+            return;
+        scheduled = true;
+
+        long delay = lastFrame + framePeriod - System.nanoTime();
+        timer.setInitialDelay((int) Math.max(0, TimeUnit.NANOSECONDS.toMillis(delay)));
+        timer.restart();
+    }
+
+    /**
+     * Waits until the next frame should be painted. If frames are painted on
+     * demand then this blocks until a repaint has been requested, otherwise it
+     * returns immediately. This method is used by the <code>RenderThread</code>,
+     * which takes care of the frame rate itself.
+     * @throws InterruptedException If the thread got interrupted while waiting.
+     */
+    public synchronized void awaitFrame() throws InterruptedException
+    {
+        while(onDemand && !invalidated)
+            wait();
+
+        invalidated = false;
+        lastFrame = System.nanoTime();
+    }
+
+    /**
+     * Paints a frame on the event dispatch thread. If frames are not painted on
+     * demand then the next frame is scheduled right away.
+     * @param e The event of the timer.
+     */
+    @Override
+    public void actionPerformed(ActionEvent e)
+    {
+        synchronized(this)
+        {
+            scheduled = false;
+            if(threadDriven || (onDemand && !invalidated))
+                return;
+
+            invalidated = false;
+            lastFrame = System.nanoTime();
+        }
+
+        frame.run();
+
+        synchronized(this)
+        {
+            if(!onDemand && !threadDriven)
+                schedule();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.core;
+
+import java.awt.EventQueue;
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import org.jnativehook.GlobalScreen;
+import org.jnativehook.NativeHookException;
+import org.jnativehook.NativeInputEvent;
+import org.jnativehook.keyboard.NativeKeyEvent;
+import org.jnativehook.keyboard.SwingKeyAdapter;
+import org.jnativehook.mouse.NativeMouseEvent;
+import org.jnativehook.mouse.NativeMouseMotionListener;
+
+/**
+ * This class listens to the keyboard and mouse of the whole system, rather than
+ * only to the events that reach the overlay window. It uses the native hook of
+ * JNativeHook, which is bundled with the library.
+ *
+ * <h2>Toggle hotkey</h2>
+ * Pressing the hotkey anywhere on the system makes the overlay focusable when it
+ * is not, and the other way around. This way the overlay can be used on top of
+ * full screen applications without having to click on it first. The modifiers
+ * that are held down have to match those of the hotkey exactly, so a hotkey of
+ * ctrl + O does not fire on ctrl + shift + O. The press of the hotkey, and the
+ * typed and released events that belong to it, are never passed on to the
+ * components. Other presses and releases of the same key are passed on as usual.
+ *
+ * <h2>Keyboard</h2>
+ * Some window managers do not give the overlay window keyboard focus when it is
+ * made focusable. While the overlay is focussed but it's window does not have
+ * keyboard focus, key events are passed on to the <code>OverlayRoot</code> by
+ * this class. As soon as the window does have keyboard focus Swing delivers the
+ * key events, so they are never delivered twice.
+ *
+ * <h2>Cursor tracking</h2>
+ * The location of the cursor is tracked on the whole screen, also while the
+ * overlay is not focussed and the window does not receive mouse events at all.
+ * Native mouse movements arrive far more often than the overlay paints, so only
+ * the last location is kept and it is passed on to the <code>OverlayRoot</code>
+ * at most once per frame. No timer runs while the mouse does not move. While the
+ * overlay is not focussed, Swing delivers no mouse events at all, so the root
+ * passes every location on to it's components as a mouse moved event.
+ *
+ * @see OverlayRoot#cursorMoved(Point)
+ * @author Wessel Jongkind
+ */
+class GlobalInputHook extends SwingKeyAdapter implements NativeMouseMotionListener
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The hotkey that is used when none is given: ctrl + shift + O.
+     */
+    public static final int DEFAULT_TOGGLE_KEY = NativeKeyEvent.VC_O;
+
+    /**
+     * The modifiers of the hotkey that is used when none is given.
+     */
+    public static final int DEFAULT_TOGGLE_MODIFIERS = NativeInputEvent.CTRL_MASK | NativeInputEvent.SHIFT_MASK;
+
+    /**
+     * The modifier masks of JNativeHook, which contain both the left and the right key.
+     */
+    private static final int[] MODIFIER_GROUPS = {
+        NativeInputEvent.SHIFT_MASK, NativeInputEvent.CTRL_MASK,
+        NativeInputEvent.META_MASK, NativeInputEvent.ALT_MASK
+    };
+
+    private final OverlayManager overlay;
+
+    private final OverlayRoot root;
+
+    /**
+     * The native key code of the hotkey, such as <code>NativeKeyEvent.VC_F12</code>.
+     */
+    private final int toggleKey;
+
+    /**
+     * The modifiers that have to be held down together with the hotkey.
+     */
+    private final int toggleModifiers;
+
+    /**
+     * The last location of the cursor on the screen that has not been passed on
+     * to the root yet, or null if there is none.
+     */
+    private final AtomicReference<Point> pendingCursor = new AtomicReference<>();
+
+    /**
+     * Passes the last location of the cursor on to the root. It only runs once,
+     * after the first mouse movement since it last ran.
+     */
+    private final Timer cursorTimer;
+
+    /**
+     * True from the moment the hotkey is pressed until it's key is released, so
+     * that the typed and released events of the hotkey are not passed on either.
+     * It is only used on the thread of the native hook.
+     */
+    private boolean toggleDown = false;
+
+    /**
+     * True if this hook registered the native hook, and should unregister it again.
+     */
+    private boolean registered = false;
+
+    /**
+     * Constructs a new hook for the given overlay. It does not listen to anything
+     * until it is started.
+     * @param overlay The overlay that receives the events.
+     * @param toggleKey The native key code of the hotkey, such as <code>NativeKeyEvent.VC_F12</code>.
+     * @param toggleModifiers The modifiers of the hotkey, such as <code>NativeInputEvent.CTRL_MASK</code>, or 0.
+     */
+    GlobalInputHook(OverlayManager overlay, int toggleKey, int toggleModifiers)
+    {
+        this.overlay = overlay;
+        this.root = overlay.getContent();
+        this.toggleKey = toggleKey;
+        this.toggleModifiers = toggleModifiers;
+
+        cursorTimer = new Timer(0, e -> flushCursor());
+        cursorTimer.setRepeats(false);
+    }
+
+    /**
+     * Registers the native hook, if it has not been registered yet, and starts
+     * listening to the keyboard and mouse. The log messages of JNativeHook are
+     * limited to warnings, as it logs every single event otherwise.
+     * @throws NativeHookException If the native hook could not be registered on this system.
+     */
+    void start() throws NativeHookException
+    {
+        Logger.getLogger(GlobalScreen.class.getPackage().getName()).setLevel(Level.WARNING);
+
+        if(!GlobalScreen.isNativeHookRegistered())
+        {
+            GlobalScreen.registerNativeHook();
+            registered = true;
+        }
+
+        GlobalScreen.addNativeKeyListener(this);
+        GlobalScreen.addNativeMouseMotionListener(this);
+    }
+
+    /**
+     * Stops listening to the keyboard and mouse. The native hook is only unregistered
+     * if it was registered by this hook.
+     */
+    void stop()
+    {
+        GlobalScreen.removeNativeKeyListener(this);
+        GlobalScreen.removeNativeMouseMotionListener(this);
+        cursorTimer.stop();
+        pendingCursor.set(null);
+        root.cursorMoved(null);
+
+        if(!registered)
+            return;
+
+        registered = false;
+        try{
+            GlobalScreen.unregisterNativeHook();
+        }catch(NativeHookException e){
+            Logger.getLogger(GlobalInputHook.class.getName()).log(Level.WARNING, "The native hook could not be unregistered.", e);
+        }
+    }
+
+    @Override
+    public void nativeKeyPressed(NativeKeyEvent e)
+    {
+        if(toggleDown && e.getKeyCode() == toggleKey)
+            return;
+
+        if(isToggle(e))
+        {
+            toggleDown = true;
+            EventQueue.invokeLater(() -> overlay.setFocusable(!overlay.isFocusable()));
+            return;
+        }
+
+        forward(e);
+    }
+
+    @Override
+    public void nativeKeyReleased(NativeKeyEvent e)
+    {
+        if(toggleDown && e.getKeyCode() == toggleKey)
+        {
+            toggleDown = false;
+            return;
+        }
+
+        forward(e);
+    }
+
+    @Override
+    public void nativeKeyTyped(NativeKeyEvent e)
+    {
+        if(!toggleDown)
+            forward(e);
+    }
+
+    @Override
+    public void nativeMouseMoved(NativeMouseEvent e)
+    {
+        trackCursor(e);
+    }
+
+    @Override
+    public void nativeMouseDragged(NativeMouseEvent e)
+    {
+        trackCursor(e);
+    }
+
+    /**
+     * Tells wether a key event is the hotkey. Exactly the modifiers of the hotkey
+     * have to be held down, and for every modifier either the left or the right
+     * key counts. Other masks, such as those of mouse buttons or lock keys, are ignored.
+     * @param e The key event that has been pressed.
+     * @return True if the event is the hotkey, otherwise false.
+     */
+    private boolean isToggle(NativeKeyEvent e)
+    {
+        if(e.getKeyCode() != toggleKey)
+            return false;
+
+        for(int group : MODIFIER_GROUPS)
+            if(((toggleModifiers & group) != 0) != ((e.getModifiers() & group) != 0))
+                return false;
+        return true;
+    }
+
+    /**
+     * Passes a key event on to the root on the event dispatch thread, but only
+     * while the overlay is focussed and Swing does not deliver key events itself.
+     * @param e The native key event.
+     */
+    private void forward(NativeKeyEvent e)
+    {
+        KeyEvent event = getJavaKeyEvent(e);
+        EventQueue.invokeLater(() -> {
+            if(!overlay.isFocusable() || overlay.isFocused())
+                return;
+
+            switch(event.getID())
+            {
+                case KeyEvent.KEY_PRESSED:  root.keyPressed(event);  break;
+                case KeyEvent.KEY_RELEASED: root.keyReleased(event); break;
+                case KeyEvent.KEY_TYPED:    root.keyTyped(event);    break;
+            }
+        });
+    }
+
+    /**
+     * Remembers the location of the cursor and makes sure it is passed on to the
+     * root within one frame. Movements that arrive before then only replace the
+     * remembered location.
+     * @param e The native mouse event.
+     */
+    private void trackCursor(NativeMouseEvent e)
+    {
+        if(pendingCursor.getAndSet(e.getPoint()) != null)
+            return;
+
+        long period = TimeUnit.NANOSECONDS.toMillis(root.getScheduler().getFramePeriod());
+        cursorTimer.setInitialDelay((int) Math.max(period, 1));
+        cursorTimer.restart();
+    }
+
+    /**
+     * Passes the last location of the cursor on to the root, relative to the root.
+     * This runs on the event dispatch thread.
+     */
+    private void flushCursor()
+    {
+        Point location = pendingCursor.getAndSet(null);
+        if(location == null || !root.isShowing())
+            return;
+
+        SwingUtilities.convertPointFromScreen(location, root);
+        root.cursorMoved(location);
+    }
+}
@@ -15,60 +15,194 @@
  */
 package cowlite.deepswing.overlay.core;
 
-import java.util.List;
+import java.awt.AWTException;
+import java.awt.Point;
 import java.awt.Robot;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
-import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
+ * This class passes mouse presses and releases that landed on the overlay while
+ * it was not focussed on to the windows below the overlay. It does this by making
+ * the overlay let all mouse events through for a moment and then repeating the
+ * events with a <code>Robot</code>.
+ *
+ * <h2>Threads</h2>
+ * Events are put in a bounded queue by the <code>OverlayRoot</code> and repeated
+ * by a dedicated thread, so neither the event dispatch thread nor painting has to
+ * wait for the <code>Robot</code>. The thread blocks while the queue is empty, so
+ * an idle overlay does not cost anything. All events that arrive while a batch is
+ * being repeated are repeated together in the next batch.
+ *
+ * <h2>Full queue</h2>
+ * If events arrive faster than they can be repeated and the queue is full, then
+ * new events are dropped rather than blocking the event dispatch thread.
  *
  * @author Wessel
  */
-public class MouseReflector implements ActionListener
+public class MouseReflector implements Runnable
 {
-    private Timer timer;
-    private Robot robot;
-    private OverlayManager root;
-    boolean supress = false;
-    
-    public MouseReflector(OverlayManager root) throws Exception
+    /**
+     * The maximum amount of events that can be waiting to be repeated.
+     */
+    public static final int QUEUE_CAPACITY = 64;
+
+    /**
+     * The amount of milliseconds the operating system gets to deliver the repeated
+     * events to the windows below the overlay before the overlay receives mouse
+     * events again.
+     */
+    public static final int SETTLE_DELAY = 15;
+
+    private final BlockingQueue<MouseEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final Robot robot;
+
+    private final OverlayRoot root;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new reflector for the root of the given overlay and starts the
+     * thread that repeats the events. Every overlay already creates a reflector
+     * for itself, so this is only needed to pass events on from outside of the overlay.
+     * @param overlay The overlay of which events are passed on.
+     * @throws Exception If the system does not allow a <code>Robot</code> to be created.
+     */
+    public MouseReflector(OverlayManager overlay) throws Exception
+    {
+        this(overlay.getContent());
+    }
+
+    /**
+     * Constructs a new reflector and starts the thread that repeats the events.
+     * @param root The root of the overlay of which events are passed on.
+     * @throws AWTException If the system does not allow a <code>Robot</code> to be created.
+     */
+    MouseReflector(OverlayRoot root) throws AWTException
     {
         this.root = root;
-        robot = new Robot();
-        timer = new Timer(1, this);
-        timer.start();
+        this.robot = new Robot();
+
+        thread = new Thread(this, "CowLite mouse reflector");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        //if(!supress)
-           // System.out.println("dafuq");
+    /**
+     * Queues a mouse event to be passed on to the windows below the overlay. Only
+     * presses and releases are passed on. This method never blocks.
+     * @param e The event that landed on the overlay.
+     * @return True if the event has been queued, false if it was ignored or the queue was full.
+     */
+    public boolean reflect(MouseEvent e)
+    {
+        if(!running || (e.getID() != MouseEvent.MOUSE_PRESSED && e.getID() != MouseEvent.MOUSE_RELEASED))
+            return false;
+
+        if(queue.offer(e))
+            return true;
+
+        Logger.getLogger(MouseReflector.class.getName()).log(Level.FINE, "Mouse event dropped, the reflector queue is full.");
+        return false;
     }
-    
+
+    /**
+     * Queues mouse events to be passed on to the windows below the overlay.
+     * @deprecated Events are no longer repeated right away, use <code>reflect(MouseEvent)</code> instead.
+     * @param mouseclicks The events that landed on the overlay.
+     */
+    @Deprecated
     public void process(List<MouseEvent> mouseclicks)
     {
-        System.out.println("processing");
-        supress = true;
         for(MouseEvent e : mouseclicks)
+            reflect(e);
+    }
+
+    /**
+     * Stops the thread that repeats events. Events that are still queued are dropped.
+     */
+    public void shutdown()
+    {
+        running = false;
+        thread.interrupt();
+        queue.clear();
+    }
+
+    @Override
+    public void run()
+    {
+        ArrayList<MouseEvent> batch = new ArrayList<>(QUEUE_CAPACITY);
+
+        while(running)
         {
-            robot.mouseMove(e.getLocationOnScreen().x, e.getLocationOnScreen().y);
-            
-            if(e.getID() == MouseEvent.MOUSE_PRESSED)
-                robot.mousePress(getButton(e.getButton()));
+            try{
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                replay(batch);
+            }catch(InterruptedException e){
+                //Interrupted by shutdown(), the loop condition takes care of it.
+            }finally{
+                batch.clear();
+            }
         }
-        root.repaint();
-        supress = false;
     }
-    
-    private int getButton(int button)
+
+    /**
+     * Lets the overlay pass all mouse events through, repeats the events and then
+     * lets the overlay receive mouse events again.
+     * @param batch The events to be repeated, in the order in which they arrived.
+     * @throws InterruptedException If the thread got interrupted while waiting for the overlay.
+     */
+    private void replay(ArrayList<MouseEvent> batch) throws InterruptedException
     {
-        System.out.println(button);
-        if(button == MouseEvent.BUTTON1)
-            return InputEvent.BUTTON1_MASK;
-        else
-            return 1234;
+        root.beginReflection();
+        try{
+            robot.waitForIdle();
+
+            for(MouseEvent e : batch)
+            {
+                int button = getButtonMask(e.getButton());
+                if(button == 0)
+                    continue;
+
+                Point location = e.getLocationOnScreen();
+                robot.mouseMove(location.x, location.y);
+
+                if(e.getID() == MouseEvent.MOUSE_PRESSED)
+                    robot.mousePress(button);
+                else
+                    robot.mouseRelease(button);
+            }
+
+            robot.delay(SETTLE_DELAY);
+        }finally{
+            root.endReflection();
+        }
+    }
+
+    /**
+     * Converts the button of a mouse event to the mask that is used by <code>Robot</code>.
+     * @param button The button of the event, such as <code>MouseEvent.BUTTON1</code>.
+     * @return The mask of the button, or 0 if the event has no (known) button.
+     */
+    private int getButtonMask(int button)
+    {
+        if(button == MouseEvent.NOBUTTON)
+            return 0;
+
+        try{
+            return InputEvent.getMaskForButton(button);
+        }catch(IllegalArgumentException e){
+            return 0;
+        }
     }
 }
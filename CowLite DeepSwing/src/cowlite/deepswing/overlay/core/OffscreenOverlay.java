@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.core;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import cowlite.deepswing.overlay.components.OverlayContainer;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+
+/**
+ * This class paints <code>OverlayComponent</code>s into an image rather than
+ * on the screen. It does not need a window, a <code>Robot</code> or a display,
+ * so it also works when <code>java.awt.headless</code> is true. It can be used
+ * for benchmarks, thumbnails of an overlay or to generate frames for a video.
+ *
+ * <h2>Frame buffer</h2>
+ * Components are painted into a <code>BufferedImage</code> of the type
+ * <code>TYPE_INT_ARGB</code>. The pixels of that image can also be read directly
+ * as an <code>int[]</code> with <code>getPixels()</code>, in which every pixel
+ * is stored as a non-premultiplied ARGB value, row by row.
+ *
+ * <h2>Rendering</h2>
+ * Nothing is painted until <code>render()</code> is called. Components report
+ * the areas that have changed to this class, just like they do on the overlay,
+ * and <code>render()</code> only paints the union of those areas again. The
+ * components are painted with the same paint loop as the overlay on the screen,
+ * so a frame looks the same as it would on the overlay.
+ *
+ * <h2>Threads</h2>
+ * This class does not use the event dispatch thread. Changing the components and
+ * rendering them should be done on the same thread.
+ *
+ * @author Wessel Jongkind
+ */
+public class OffscreenOverlay implements OverlayContainer
+{
+    /**
+     * All the components that are painted into the image.
+     */
+    private final ArrayList<OverlayComponent> components = new ArrayList<>();
+
+    /**
+     * The image into which the components are painted.
+     */
+    private BufferedImage image;
+
+    /**
+     * The pixels of the image.
+     */
+    private int[] pixels;
+
+    /**
+     * The color with which the image is cleared before the components are painted.
+     */
+    private Color background = OverlayComponent.INVISIBLE;
+
+    /**
+     * The union of all areas that have been reported by components since the
+     * last frame. It is null if nothing has to be rendered.
+     */
+    private Rectangle dirtyRegion;
+
+    /**
+     * Constructs a new offscreen overlay with an image of the given size. The image
+     * is fully transparent until the first frame has been rendered.
+     * @param width The width of the image, in pixels.
+     * @param height The height of the image, in pixels.
+     */
+    public OffscreenOverlay(int width, int height)
+    {
+        setSize(width, height);
+    }
+
+    /**
+     * Changes the size of the image. The old image is discarded, so the next call
+     * to <code>render()</code> paints a complete frame into a new image.
+     * @param width The width of the image, in pixels.
+     * @param height The height of the image, in pixels.
+     */
+    public void setSize(int width, int height)
+    {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("The size of an offscreen overlay must be positive, but was " + width + "x" + height + ".");
+
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        dirtyRegion = new Rectangle(0, 0, width, height);
+    }
+
+    public int getWidth()
+    {
+        return image.getWidth();
+    }
+
+    public int getHeight()
+    {
+        return image.getHeight();
+    }
+
+    /**
+     * Changes the color with which the image is cleared before the components are
+     * painted. By default it is fully transparent.
+     * @param background The background color of the image.
+     */
+    public void setBackground(Color background)
+    {
+        this.background = background;
+        repaintAll();
+    }
+
+    public Color getBackground()
+    {
+        return background;
+    }
+
+    /**
+     * Adds a component to the image. Its offset will be set to 0, so its location
+     * is relative to the top left corner of the image.
+     * @param comp The component to be added.
+     */
+    public void add(OverlayComponent comp)
+    {
+        components.add(comp);
+        comp.setOffsetX(0);
+        comp.setOffsetY(0);
+        comp.setContainer(this);
+        comp.repaint();
+    }
+
+    /**
+     * Removes a component from the image. The area where it was painted gets
+     * rendered again during the next frame.
+     * @param comp The component to be removed.
+     */
+    public void remove(OverlayComponent comp)
+    {
+        if(!components.remove(comp))
+            return;
+
+        comp.repaint();
+        comp.setContainer(null);
+    }
+
+    /**
+     * Removes all components from the image.
+     */
+    public void removeAll()
+    {
+        for(OverlayComponent comp : new ArrayList<>(components))
+            remove(comp);
+    }
+
+    public ArrayList<OverlayComponent> getOverlayComponents()
+    {
+        return components;
+    }
+
+    /**
+     * Adds the area to the region that gets rendered during the next frame.
+     * @param source The component that requested the repaint.
+     * @param area The area to be repainted.
+     */
+    @Override
+    public void repaintRequested(OverlayComponent source, Rectangle area)
+    {
+        if(dirtyRegion == null)
+            dirtyRegion = new Rectangle(area);
+        else
+            dirtyRegion.add(area);
+    }
+
+    /**
+     * The offscreen overlay does not receive mouse events, so it does not have to
+     * keep track of where it's components are.
+     * @param source The component that has been moved or resized.
+     */
+    @Override
+    public void boundsChanged(OverlayComponent source)
+    {
+    }
+
+    /**
+     * The offscreen overlay does not receive mouse events, so it does not have to
+     * keep track of which components contain focus.
+     * @param source The component of which the focus has changed.
+     */
+    @Override
+    public void focusChanged(OverlayComponent source)
+    {
+    }
+    
+    /**
+     * The offscreen overlay does not receive mouse events, so it does not have to
+     * keep track of which components need every motion event.
+     * @param source The component of which the motion coalescing has changed.
+     */
+    @Override
+    public void motionCoalescingChanged(OverlayComponent source)
+    {
+    }
+
+    /**
+     * Makes sure that the whole image gets rendered during the next frame.
+     */
+    public void repaintAll()
+    {
+        dirtyRegion = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Tells wether or not something has changed since the last frame.
+     * @return True if the next call to <code>render()</code> paints anything, otherwise false.
+     */
+    public boolean isDirty()
+    {
+        return dirtyRegion != null;
+    }
+
+    /**
+     * Renders a frame. Only the areas that have changed since the last frame are
+     * cleared and painted again; the rest of the image is left as it was.
+     * @return The image into which the components have been painted.
+     */
+    public BufferedImage render()
+    {
+        Rectangle region = dirtyRegion;
+        dirtyRegion = null;
+
+        if(region == null)
+            return image;
+
+        region = region.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if(region.isEmpty())
+            return image;
+
+        Graphics2D g2 = image.createGraphics();
+        try{
+            g2.clip(region);
+            g2.setComposite(AlphaComposite.Src);
+            g2.setColor(background);
+            g2.fill(region);
+            g2.setComposite(AlphaComposite.SrcOver);
+
+            OverlayRoot.paintComponents(g2, components);
+        }finally{
+            g2.dispose();
+        }
+
+        return image;
+    }
+
+    /**
+     * Renders a complete frame, whether anything has changed or not.
+     * @return The image into which the components have been painted.
+     */
+    public BufferedImage renderAll()
+    {
+        repaintAll();
+        return render();
+    }
+
+    /**
+     * Returns the image into which the components are painted. It contains the
+     * last frame that has been rendered.
+     * @return The image of the offscreen overlay.
+     */
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+
+    /**
+     * Returns the pixels of the image into which the components are painted. The
+     * array is not a copy; it changes whenever a frame is rendered, until the size
+     * of the overlay is changed.
+     * @return The pixels of the image as non-premultiplied ARGB values, row by row.
+     */
+    public int[] getPixels()
+    {
+        return pixels;
+    }
+}
@@ -8,10 +8,15 @@
 package cowlite.deepswing.overlay.core;
 
 import java.awt.Color;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.IllegalComponentStateException;
+import java.awt.Shape;
 import java.awt.Toolkit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFrame;
+import org.jnativehook.NativeHookException;
 
 /**
  * This class manages the overlay and all of it's components.
@@ -32,6 +37,18 @@ class OverlayManager extends JFrame
      */
     private boolean initialized;
     
+    /**
+     * The thread that paints the overlay while active rendering is enabled. It
+     * is null while Swing paints the overlay.
+     */
+    private RenderThread renderer;
+    
+    /**
+     * The hook that listens to the keyboard and mouse of the whole system. It is
+     * null while global input is disabled.
+     */
+    private GlobalInputHook inputHook;
+    
     /**
      * Constructs a new <code>OverlayManager</code>. It automatically registers
      * all mouse, mousemotion and keylisteners, it automatically sets the size,
@@ -53,6 +70,7 @@ class OverlayManager extends JFrame
         super.add(content);
         this.content.addMouseMotionListener(content);
         this.content.addMouseListener(content);
+        this.content.addMouseWheelListener(content);
         this.content.addKeyListener(content);
         
         //100% pixel transparency is required to click through a JFrame
@@ -84,6 +102,165 @@ class OverlayManager extends JFrame
         this.content.setFocussed(focusable);
     }
     
+    /**
+     * Enables active rendering. Instead of Swing painting the overlay whenever a
+     * repaint is requested, a <code>RenderThread</code> paints the whole overlay
+     * into a <code>BufferStrategy</code> whenever the <code>FrameScheduler</code>
+     * asks for a frame. If active rendering is already enabled then only the frame
+     * rate is changed.
+     * @see RenderThread
+     * @param frameRate The maximum amount of frames that should be painted every second.
+     * @throws IllegalStateException If the overlay has not been made visible yet.
+     */
+    public void startActiveRendering(int frameRate)
+    {
+        if(renderer == null && !isDisplayable())
+            throw new IllegalStateException("The overlay has to be visible before active rendering can be started.");
+        
+        FrameScheduler scheduler = content.getScheduler();
+        scheduler.setFrameRate(frameRate);
+        
+        if(renderer != null)
+            return;
+        
+        setIgnoreRepaint(true);
+        content.setActiveRendering(true);
+        createBufferStrategy(2);
+        
+        renderer = new RenderThread(this, content, scheduler);
+        renderer.start();
+        scheduler.invalidate();
+    }
+    
+    /**
+     * Disables active rendering, after which Swing paints the overlay again.
+     * Nothing happens if active rendering is not enabled.
+     */
+    public void stopActiveRendering()
+    {
+        if(renderer == null)
+            return;
+        
+        renderer.shutdown();
+        renderer = null;
+        
+        setIgnoreRepaint(false);
+        content.setActiveRendering(false);
+        repaint();
+    }
+    
+    /**
+     * Tells wether or not the overlay is painted by a <code>RenderThread</code>.
+     * @return True if active rendering is enabled, otherwise false.
+     */
+    public boolean isActiveRendering()
+    {
+        return renderer != null;
+    }
+    
+    /**
+     * Starts listening to the keyboard and mouse of the whole system. The hotkey
+     * toggles wether the overlay is focusable, and the location of the cursor
+     * is tracked while the overlay is not focussed. If global input is already
+     * enabled then the old hotkey is replaced.
+     * @see GlobalInputHook
+     * @param toggleKey The native key code of the hotkey, such as <code>NativeKeyEvent.VC_F12</code>.
+     * @param toggleModifiers The modifiers of the hotkey, such as <code>NativeInputEvent.CTRL_MASK</code>, or 0.
+     * @throws NativeHookException If the native hook could not be registered on this system.
+     */
+    public void enableGlobalInput(int toggleKey, int toggleModifiers) throws NativeHookException
+    {
+        disableGlobalInput();
+        
+        GlobalInputHook hook = new GlobalInputHook(this, toggleKey, toggleModifiers);
+        hook.start();
+        inputHook = hook;
+    }
+    
+    /**
+     * Stops listening to the keyboard and mouse of the whole system. Nothing
+     * happens if global input is not enabled.
+     */
+    public void disableGlobalInput()
+    {
+        if(inputHook == null)
+            return;
+        
+        inputHook.stop();
+        inputHook = null;
+    }
+    
+    public boolean isGlobalInputEnabled()
+    {
+        return inputHook != null;
+    }
+    
+    @Override
+    public void dispose()
+    {
+        disableGlobalInput();
+        stopActiveRendering();
+        content.shutdown();
+        super.dispose();
+    }
+    
+    /**
+     * Sets the maximum amount of frames that are painted every second, both when
+     * Swing paints the overlay and when active rendering is enabled.
+     * @param frameRate The maximum amount of frames per second.
+     */
+    public void setMaximumFrameRate(int frameRate)
+    {
+        content.getScheduler().setFrameRate(frameRate);
+    }
+    
+    /**
+     * Enables or disables painting on demand. When enabled, which it is by default,
+     * the overlay only gets painted when a component has changed. When disabled,
+     * the overlay gets painted at the maximum frame rate at all times.
+     * @param onDemand True if the overlay should only be painted when it has changed, otherwise false.
+     */
+    public void setRenderOnDemand(boolean onDemand)
+    {
+        content.getScheduler().setOnDemand(onDemand);
+    }
+    
+    /**
+     * Tells wether the shape of the overlay window can be changed on this system.
+     * This requires support for per-pixel transparent windows.
+     * @return True if <code>setInputRegion(Shape)</code> has any effect, otherwise false.
+     */
+    public boolean isInputRegionSupported()
+    {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if(configuration == null)
+            return false;
+        
+        GraphicsDevice device = configuration.getDevice();
+        return device.isWindowTranslucencySupported(GraphicsDevice.WindowTranslucency.PERPIXEL_TRANSPARENT);
+    }
+    
+    /**
+     * Limits the area of the overlay window that receives mouse events. Outside of
+     * this area the window does not exist for the operating system, so clicks go
+     * straight to the windows below the overlay. Nothing happens if this is not
+     * supported on this system.
+     * @see #isInputRegionSupported()
+     * @param region The area that should receive mouse events relative to the window,
+     *               or null if the whole window should receive mouse events.
+     */
+    public void setInputRegion(Shape region)
+    {
+        if(!isInputRegionSupported())
+            return;
+        
+        try{
+            setShape(region);
+        }catch(UnsupportedOperationException | IllegalComponentStateException e){
+            Logger.getLogger(OverlayManager.class.getName()).log(Level.WARNING, "The input region of the overlay could not be set.", e);
+        }
+    }
+    
     public void setContent(OverlayRoot content)
     {
         this.content = content;
@@ -8,8 +8,15 @@
 package cowlite.deepswing.overlay.core;
 
 import cowlite.deepswing.overlay.components.OverlayComponent;
+import cowlite.deepswing.overlay.components.OverlayContainer;
+import cowlite.deepswing.overlay.util.OcclusionCuller;
+import cowlite.deepswing.overlay.util.OverlayMetrics;
+import cowlite.deepswing.overlay.util.SpatialIndex;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.event.KeyEvent;
@@ -17,8 +24,18 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.geom.Path2D;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * This class paints all components and makes sure the mouse can click through
@@ -27,13 +44,41 @@ import javax.swing.JPanel;
  * <h2>Clicking through the overlay</h2>
  * This class will make sure that all components are painted on the overlay
  * and that the mouse is able to click through the overlay if it is not focussed.
- * It does this by painting a fully transparent pixel below the cursor. This will
- * allow the mouse to click behind the overlay without the user being able to
- * graphically see that the pixel is invisible. 
+ * If the system supports shaped windows then the overlay window is limited to
+ * the area of it's components with <code>setShape</code> while it is not focussed.
+ * Clicks outside of the components then never reach the overlay, so they go
+ * straight to the windows below it. The shape is calculated again whenever a
+ * component is added, removed, moved or resized, and the whole window receives
+ * mouse events again once the overlay gets focussed.
+ * <br>
+ * Clicks that do reach the overlay while it is not focussed are passed on by a
+ * <code>MouseReflector</code>. While it repeats a click the window gets an empty
+ * shape, or, if the system does not support shaped windows, an empty frame is
+ * painted instead.
+ * 
+ * <h2>Repainting</h2>
+ * Components report the areas that have changed to this class. All areas that
+ * are reported before the next frame are combined and only the union of those
+ * areas gets repainted, rather than the whole overlay. When the next frame gets
+ * painted is decided by a <code>FrameScheduler</code>.
+ * 
+ * <h2>Mouse events</h2>
+ * Mouse events are only passed on to the components below the mouse, topmost
+ * component first, and to the components that contain focus. A <code>SpatialIndex</code>
+ * is used to find the components below the mouse, so the cost of a mouse event
+ * does not grow with the amount of components on the overlay.
+ * <br>
+ * Mouse movements and drags that happen between two frames are combined into a
+ * single event, so the components are notified at most once per frame. Components
+ * that need every movement can disable this with <code>setMotionCoalescing(false)</code>.
+ * 
+ * <h2>Key events</h2>
+ * Key events are passed on to the focus owner by a <code>FocusManager</code>,
+ * rather than to every component on the overlay.
  * 
  * @author Wessel Jongkind
  */
-class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener, KeyListener
+class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener, MouseWheelListener, KeyListener, OverlayContainer
 {
     /**
      * The overlay attached to this root container.
@@ -51,19 +96,88 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
     private boolean focussed = false;
     
     /**
-     * If the overlay should be repainted then it is true. Else it is false.
+     * Passes clicks on to the windows below the overlay while it is not focussed.
+     */
+    private final MouseReflector reflector;
+    
+    /**
+     * Is set while the reflector needs an empty frame to pass clicks through the
+     * overlay. While it is set nothing gets painted, and the latch is released
+     * once an empty frame has been painted.
+     */
+    private volatile CountDownLatch emptyFrame;
+    
+    /**
+     * The maximum amount of milliseconds the reflector waits for an empty frame.
+     */
+    private static final long EMPTY_FRAME_TIMEOUT = 250;
+    
+    /**
+     * The union of all areas that have been reported by components since the
+     * last frame. It is null if nothing has to be repainted.
+     */
+    private Rectangle dirtyRegion;
+    
+    /**
+     * Decides when the dirty region gets repainted. It combines all repaint
+     * requests between two frames and limits the amount of frames per second.
+     */
+    private final FrameScheduler scheduler = new FrameScheduler(this::flushDirtyRegion);
+    
+    /**
+     * True if the overlay is being painted by a <code>RenderThread</code> rather
+     * than by Swing.
+     */
+    private volatile boolean activeRendering = false;
+    
+    /**
+     * True if the input region of the overlay has to be calculated again, and
+     * the calculation has not been scheduled yet.
+     */
+    private boolean inputRegionPending = false;
+    
+    /**
+     * The location and size of all components, relative to the root's origin.
+     */
+    private final SpatialIndex index = new SpatialIndex();
+    
+    /**
+     * The components that are focussed or that contain a focussed descendant.
+     */
+    private final LinkedHashSet<OverlayComponent> focusHolders = new LinkedHashSet<>();
+    
+    /**
+     * Decides which component receives the key events.
+     */
+    private final FocusManager focusManager = new FocusManager(this);
+    
+    /**
+     * The last known location of the cursor relative to the root's origin, or
+     * null if the cursor is not being tracked.
      */
-    private boolean repaint = false;
+    private volatile Point cursor;
     
-    private ArrayList<MouseEvent> mouseclicks = new ArrayList<>();
+    /**
+     * The components that need every mouse motion event, or that contain a
+     * descendant that does.
+     */
+    private final HashSet<OverlayComponent> everyMotion = new HashSet<>();
     
     /**
-     * If the overlay is still painting, or a paint-request has been done
-     * but it hasn't painted since then it is true. Else it is false.
+     * The last mouse motion event that has not been dispatched yet, or null if
+     * there is none.
      */
-    private boolean painting = false;
+    private MouseEvent pendingMotion;
     
-    private MouseReflector reflector;
+    /**
+     * The time at which the last mouse motion event has been dispatched, in nanoseconds.
+     */
+    private long lastMotion = System.nanoTime();
+    
+    /**
+     * Dispatches the waiting mouse motion event at the end of the frame period.
+     */
+    private final Timer motionTimer = new Timer(0, e -> flushMotion());
     
     /**
      * Constructs a new root container for the overlay.
@@ -72,13 +186,18 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
     public OverlayRoot(OverlayManager overlay) throws Exception
     {
         this.overlay = overlay;
-        reflector = new MouseReflector(overlay);
+        reflector = new MouseReflector(this);
+        motionTimer.setRepeats(false);
+        
+        //Tab is handled by the focus manager rather than by Swing
+        setFocusTraversalKeysEnabled(false);
     }
     
     /**
-     * First it paints all components on the overlay. After this is finished it will
-     * paint an invisible pixel at the mouse's last known location if the overlay
-     * is not focussed. This will allow the user to click through the overlay.
+     * Paints all components on the overlay, unless it is painted by a <code>RenderThread</code>.
+     * Nothing extra is painted to let clicks through the overlay, since the shape
+     * of the window takes care of that.
+     * @see #paintOverlay(Graphics2D)
      * @param g The graphics to be painting with.
      */
     @Override
@@ -87,27 +206,172 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         super.paintComponent(g);
         //System.out.println(focussed);
         
-        Graphics2D g2 = (Graphics2D) g;
+        if(!activeRendering)
+            paintOverlay((Graphics2D) g);
+    }
+    
+    /**
+     * Paints all components on the overlay with the given graphics object. This
+     * is used both when Swing paints the overlay and when the overlay is painted
+     * by a <code>RenderThread</code>, and in both cases it runs on the event
+     * dispatch thread. If clicks are being passed on to the windows below the
+     * overlay then nothing gets painted.
+     * @see RenderThread
+     * @param g2 The graphics to be painting with.
+     */
+    void paintOverlay(Graphics2D g2)
+    {
+        CountDownLatch latch = emptyFrame;
+        if(latch != null)
+        {
+            latch.countDown();
+            return;
+        }
         
-        System.out.println(mouseclicks.isEmpty());
-        if(!mouseclicks.isEmpty())
+        paintComponents(g2, components);
+    }
+    
+    /**
+     * Makes the overlay let all mouse events through, so that the reflector can
+     * repeat clicks on the windows below it. If the shape of the overlay window
+     * can be changed then the window is given an empty shape. Otherwise an empty
+     * frame is painted, and this method waits until it has been painted. This
+     * method is called by the thread of the <code>MouseReflector</code>.
+     * @see #endReflection()
+     * @throws InterruptedException If the thread got interrupted while waiting.
+     */
+    void beginReflection() throws InterruptedException
+    {
+        if(overlay.isInputRegionSupported())
         {
-            //get click events
-            reflector.process(mouseclicks);
-            mouseclicks.clear();
+            EventQueue.invokeLater(() -> overlay.setInputRegion(new Rectangle()));
             return;
         }
         
+        CountDownLatch latch = new CountDownLatch(1);
+        emptyFrame = latch;
+        repaintAll();
+        latch.await(EMPTY_FRAME_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Lets the overlay receive mouse events again after clicks have been passed on
+     * to the windows below it.
+     * @see #beginReflection()
+     */
+    void endReflection()
+    {
+        emptyFrame = null;
+        invalidateInputRegion();
+        repaintAll();
+    }
+    
+    /**
+     * Tells the root where the cursor is. This is called by the <code>GlobalInputHook</code>
+     * on the event dispatch thread, at most once per frame, also while the overlay
+     * is not focussed. While it is not focussed Swing does not deliver mouse events,
+     * so the location is passed on to the components as a mouse moved event, in
+     * the same way as a real one, to let them react to the cursor hovering over them.
+     * @see GlobalInputHook
+     * @param location The location of the cursor relative to the root's origin,
+     *                 or null if the cursor is no longer tracked.
+     */
+    void cursorMoved(Point location)
+    {
+        cursor = location;
+        
+        if(location == null || focussed || emptyFrame != null)
+            return;
+        
+        MouseEvent e = new MouseEvent(this, MouseEvent.MOUSE_MOVED, System.currentTimeMillis(), 0, location.x, location.y, 0, false);
+        OverlayMetrics.recordEvent(e);
+        flushMotion();
+        dispatchMotion(e);
+    }
+    
+    /**
+     * Returns the last known location of the cursor, as tracked by the
+     * <code>GlobalInputHook</code>.
+     * @return The location of the cursor relative to the root's origin, or null
+     *         if the cursor is not being tracked.
+     */
+    Point getCursorLocation()
+    {
+        Point location = cursor;
+        return location == null ? null : new Point(location);
+    }
+    
+    /**
+     * Returns the topmost component on the overlay below the cursor.
+     * @see #getCursorLocation()
+     * @return The component below the cursor, or null if there is none or the
+     *         cursor is not being tracked.
+     */
+    OverlayComponent getComponentAtCursor()
+    {
+        Point location = cursor;
+        if(location == null)
+            return null;
+        
+        ArrayList<OverlayComponent> hits = index.query(location.x, location.y);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+    
+    /**
+     * Stops the thread that passes clicks on to the windows below the overlay.
+     */
+    void shutdown()
+    {
+        reflector.shutdown();
+    }
+    
+    /**
+     * Paints a list of components as a single frame, in the order in which they
+     * appear in the list. The clip of the graphics object is restored after every
+     * component. Components that can not be seen, because they lie outside of the
+     * clip or are covered by an opaque component, are skipped. This is the paint
+     * loop of every overlay, whether it is painted on the screen or into an
+     * <code>OffscreenOverlay</code>. The list is copied before it is culled, so
+     * that culling and painting always see the same components.
+     * @see OffscreenOverlay
+     * @param g2 The graphics to be painting with.
+     * @param components The components to be painted.
+     */
+    static void paintComponents(Graphics2D g2, List<OverlayComponent> components)
+    {
         g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
         Shape parentClip = g2.getClip();
         
-        for(OverlayComponent comp : components)
+        long start = OverlayMetrics.isRecording() ? System.nanoTime() : 0;
+        
+        OverlayComponent[] painted = components.toArray(new OverlayComponent[components.size()]);
+        boolean[] visible = OcclusionCuller.findVisible(painted, g2.getClipBounds());
+        for(int i = 0; i < visible.length; i++)
         {
-            comp.paintComponent(g);
-            g.setClip(parentClip);
+            if(!visible[i])
+                continue;
+            
+            painted[i].paint(g2);
+            g2.setClip(parentClip);
         }
+        
+        if(start != 0)
+            OverlayMetrics.recordFrame(System.nanoTime() - start);
+    }
+    
+    /**
+     * Tells the root wether or not the overlay is being painted by a <code>RenderThread</code>.
+     * While it is, Swing no longer paints the components and repaint requests
+     * of components are ignored, because every frame is painted completely.
+     * @param activeRendering True if a <code>RenderThread</code> paints the overlay, otherwise false.
+     */
+    void setActiveRendering(boolean activeRendering)
+    {
+        this.activeRendering = activeRendering;
+        setIgnoreRepaint(activeRendering);
+        scheduler.setThreadDriven(activeRendering);
     }
     
     /**
@@ -120,14 +384,22 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         this.focussed = focussed;
         
         if(!focussed)
+        {
+            motionTimer.stop();
+            pendingMotion = null;
+            
             for(OverlayComponent comp : components)
                 comp.setFocussed(false);
+        }
+        
+        invalidateInputRegion();
     }
     
     public void setContent(ArrayList<OverlayComponent> content)
     {
         this.removeAll();
-        this.components.addAll(content);
+        for(OverlayComponent comp : content)
+            add(comp);
     }
     
     public ArrayList<OverlayComponent> getOverlayComponents()
@@ -146,6 +418,12 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         components.add(comp); 
         comp.setOffsetX(getX());
         comp.setOffsetY(getY());
+        comp.setContainer(this);
+        index.insert(comp, getLocalBounds(comp));
+        focusChanged(comp);
+        motionCoalescingChanged(comp);
+        comp.repaint();
+        invalidateInputRegion();
     }
     
     /**
@@ -155,19 +433,224 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
      */
     public void remove(OverlayComponent comp)
     {
-        components.remove(comp);
+        if(!components.remove(comp))
+            return;
+        
+        comp.repaint();
+        comp.setContainer(null);
+        index.remove(comp);
+        if(focusHolders.remove(comp))
+            focusManager.invalidate();
+        everyMotion.remove(comp);
+        invalidateInputRegion();
     }
     
     @Override
     public void removeAll()
     {
-        this.components.removeAll(this.getOverlayComponents());
+        for(OverlayComponent comp : new ArrayList<>(components))
+            remove(comp);
+    }
+    
+    /**
+     * Adds the area to the region that has to be repainted during the next frame
+     * and asks the scheduler for a frame. All areas that are reported before the
+     * next frame are painted at once.
+     * @param source The component that requested the repaint.
+     * @param area The area to be repainted.
+     */
+    @Override
+    public void repaintRequested(OverlayComponent source, Rectangle area)
+    {
+        synchronized(this)
+        {
+            if(dirtyRegion == null)
+                dirtyRegion = new Rectangle(area);
+            else
+                dirtyRegion.add(area);
+        }
+        
+        scheduler.invalidate();
+    }
+    
+    /**
+     * Updates the location and size of the component in the index of the root.
+     * @param source The component that has been moved or resized.
+     */
+    @Override
+    public void boundsChanged(OverlayComponent source)
+    {
+        index.update(source, getLocalBounds(source));
+        invalidateInputRegion();
+    }
+    
+    /**
+     * Makes sure that the input region of the overlay gets calculated again. The
+     * calculation happens on the event dispatch thread once all changes that are
+     * being made right now have been made, so any amount of changes in a row only
+     * cause a single calculation.
+     */
+    private synchronized void invalidateInputRegion()
+    {
+        if(inputRegionPending)
+            return;
+        
+        inputRegionPending = true;
+        EventQueue.invokeLater(this::updateInputRegion);
+    }
+    
+    /**
+     * Limits the overlay window to the area of the components while the overlay
+     * is not focussed. While it is focussed the whole window receives mouse events,
+     * so that components can for example lose focus when the mouse is pressed
+     * outside of them.
+     */
+    private void updateInputRegion()
+    {
+        synchronized(this)
+        {
+            inputRegionPending = false;
+        }
+        
+        if(!overlay.isInputRegionSupported())
+            return;
+        
+        if(focussed)
+        {
+            overlay.setInputRegion(null);
+            return;
+        }
+        
+        Point origin = SwingUtilities.convertPoint(this, 0, 0, overlay);
+        Path2D.Float region = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        
+        for(OverlayComponent comp : components)
+        {
+            Rectangle bounds = getLocalBounds(comp);
+            if(bounds.isEmpty())
+                continue;
+            
+            //Antialiased borders can be painted one pixel outside of the component.
+            bounds.grow(1, 1);
+            bounds.translate(origin.x, origin.y);
+            region.append(bounds, false);
+        }
+        
+        overlay.setInputRegion(region);
+    }
+    
+    /**
+     * Keeps track of which components contain focus, so that they keep receiving
+     * mouse events when the mouse is not above them.
+     * @param source The component of which the focus has changed.
+     */
+    @Override
+    public void focusChanged(OverlayComponent source)
+    {
+        if(source.containsFocus() && source.getContainer() == this)
+            focusHolders.add(source);
+        else
+            focusHolders.remove(source);
+        
+        focusManager.invalidate();
+    }
+    
+    /**
+     * Returns the components on the root that are focussed or that contain a
+     * focussed descendant.
+     * @return The components that contain focus, in the order in which they gained it.
+     */
+    LinkedHashSet<OverlayComponent> getFocusHolders()
+    {
+        return focusHolders;
+    }
+    
+    FocusManager getFocusManager()
+    {
+        return focusManager;
+    }
+    
+    /**
+     * Returns the area a component occupies relative to the origin of the root,
+     * which is the area under which it is stored in the index.
+     * @param comp The component.
+     * @return The location and size of the component.
+     */
+    private Rectangle getLocalBounds(OverlayComponent comp)
+    {
+        return new Rectangle(comp.getX(), comp.getY(), comp.getWidth(), comp.getHeight());
+    }
+    
+    /**
+     * Returns the components that a mouse event should be passed on to: the components
+     * below the mouse, topmost first, followed by the other components that contain focus.
+     * @param e The mouse event.
+     * @return The components that should receive the event.
+     */
+    private ArrayList<OverlayComponent> getMouseTargets(MouseEvent e)
+    {
+        ArrayList<OverlayComponent> targets = index.query(e.getX() - getX(), e.getY() - getY());
+        for(OverlayComponent comp : focusHolders)
+            if(!targets.contains(comp))
+                targets.add(comp);
+        return targets;
+    }
+    
+    /**
+     * Requests a repaint of the whole overlay during the next frame.
+     */
+    private void repaintAll()
+    {
+        repaintRequested(null, new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+    
+    /**
+     * Repaints the union of all areas that have been reported since the last frame.
+     * If the scheduler paints every tick rather than on demand and nothing has been
+     * reported then the whole overlay is repainted.
+     */
+    private void flushDirtyRegion()
+    {
+        Rectangle region;
+        synchronized(this)
+        {
+            region = dirtyRegion;
+            dirtyRegion = null;
+        }
+        
+        if(activeRendering)
+            return;
+        
+        if(region != null)
+            repaint(region);
+        else if(!scheduler.isOnDemand())
+            repaint();
+    }
+    
+    /**
+     * Forgets the areas that have been reported since the last frame. This is
+     * called by the <code>RenderThread</code> before every frame, since it paints
+     * the whole overlay anyway.
+     */
+    synchronized void clearDirtyRegion()
+    {
+        dirtyRegion = null;
+    }
+    
+    /**
+     * Returns the scheduler that decides when the overlay gets painted.
+     * @return The scheduler of the overlay.
+     */
+    FrameScheduler getScheduler()
+    {
+        return scheduler;
     }
 
     /**
      * When the mouse is dragged on the overlay while the overlay is focussed
-     * all overlay components that are an instance of <code>MouseMotionListener</code> 
-     * will be notified of this.
+     * the components below the mouse and the components that contain focus
+     * will be notified of this. Drags that happen between two frames are combined.
+     * @see #coalesceMotion(MouseEvent) 
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -177,16 +660,19 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseMotionListener)
-                ((MouseMotionListener)comp).mouseDragged(e);
+        OverlayMetrics.recordEvent(e);
+        coalesceMotion(e);
     }
 
     /**
-     * When the mouse is moved above the overlay all overlay then a repaint will
-     * be requested so that the pixel below the cursor remains invisible. If 
-     * the overlay is focussed then all overlay components that are an instance 
-     * of <code>MouseMotionListener</code> will be notified of this.
+     * When the mouse is moved above the overlay while the overlay is focussed
+     * the components below the mouse and the components that contain focus will
+     * be notified of this. Movements that happen between two frames are combined.
+     * While the overlay is not focussed the cursor is tracked by the
+     * <code>GlobalInputHook</code> instead, as the shape of the window keeps most
+     * movements from reaching it.
+     * @see #cursorMoved(Point)
+     * @see #coalesceMotion(MouseEvent) 
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -196,14 +682,113 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseMotionListener)
-                ((MouseMotionListener)comp).mouseMoved(e);
+        OverlayMetrics.recordEvent(e);
+        coalesceMotion(e);
+    }
+    
+    /**
+     * Dispatches a motion event, or keeps it until the next frame. If no motion
+     * event has been dispatched during the last frame period then the event is
+     * dispatched right away. Otherwise it replaces the event that is waiting, and
+     * the waiting event is dispatched once the frame period has passed. This way
+     * the component tree is walked at most once per frame, no matter how often
+     * the mouse reports it's location.
+     * <br>
+     * If a component below the mouse or a component that contains focus needs every
+     * motion event then the event is dispatched right away. Any other mouse event
+     * dispatches the waiting motion event first, so that events keep their order.
+     * @see OverlayComponent#setMotionCoalescing(boolean) 
+     * @param e The mouse event, which is either moved or dragged.
+     */
+    private void coalesceMotion(MouseEvent e)
+    {
+        long wait = lastMotion + scheduler.getFramePeriod() - System.nanoTime();
+        
+        if((pendingMotion == null && wait <= 0) || needsEveryMotion(e))
+        {
+            flushMotion();
+            dispatchMotion(e);
+            return;
+        }
+        
+        pendingMotion = e;
+        if(!motionTimer.isRunning())
+        {
+            motionTimer.setInitialDelay((int) Math.max(TimeUnit.NANOSECONDS.toMillis(wait), 1));
+            motionTimer.start();
+        }
+    }
+    
+    /**
+     * Dispatches the motion event that is waiting for the next frame, if there is one.
+     */
+    private void flushMotion()
+    {
+        motionTimer.stop();
+        
+        MouseEvent e = pendingMotion;
+        pendingMotion = null;
+        
+        if(e != null && focussed)
+            dispatchMotion(e);
+    }
+    
+    private void dispatchMotion(MouseEvent e)
+    {
+        lastMotion = System.nanoTime();
+        
+        if(e.getID() == MouseEvent.MOUSE_DRAGGED)
+            for(OverlayComponent comp : getMouseTargets(e))
+                comp.mouseDragged(e);
+        else
+            for(OverlayComponent comp : getMouseTargets(e))
+                comp.mouseMoved(e);
+    }
+    
+    /**
+     * Tells wether a motion event has to be dispatched right away, because one
+     * of the components it would be passed on to needs every motion event.
+     * @param e The mouse event.
+     * @return True if the event should not be combined with other events, otherwise false.
+     */
+    private boolean needsEveryMotion(MouseEvent e)
+    {
+        if(everyMotion.isEmpty())
+            return false;
+        
+        for(OverlayComponent comp : getMouseTargets(e))
+            if(everyMotion.contains(comp))
+                return true;
+        return false;
+    }
+    
+    /**
+     * Keeps track of which components need every mouse motion event.
+     * @param source The component of which the motion coalescing has changed.
+     */
+    @Override
+    public void motionCoalescingChanged(OverlayComponent source)
+    {
+        if(source.needsEveryMotion() && source.getContainer() == this)
+            everyMotion.add(source);
+        else
+            everyMotion.remove(source);
+    }
+    
+    /**
+     * The overlay is painted and receives it's input on the event dispatch thread,
+     * also when it is actively rendered.
+     * @return Always true.
+     */
+    @Override
+    public boolean isOwnedByEventDispatchThread()
+    {
+        return true;
     }
     
     /**
      * When the mouse is clicked on the overlay while the overlay is focussed
-     * all overlay components that are an instance of <code>MouseListener</code> 
+     * the components below the mouse and the components that contain focus
      * will be notified of this.
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
@@ -214,41 +799,42 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseClicked(e);
+        OverlayMetrics.recordEvent(e);
+        
+        flushMotion();
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseClicked(e);
     }
     
     /**
      * When the mouse is pressed above the overlay while the overlay is focussed
-     * all overlay components that are an instance of <code>MouseListener</code> 
-     * will be notified of this.
+     * the components below the mouse and the components that contain focus
+     * will be notified of this. If the overlay is not focussed then the event
+     * is passed on to the windows below the overlay by the <code>MouseReflector</code>.
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
     @Override
     public void mousePressed(MouseEvent e)
     {
-        System.out.println("press");
         if(!focussed)
         {
-            mouseclicks.add(e);
-            overlay.repaint();
-            //mouseclicks.
+            reflector.reflect(e);
             return;
         }
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mousePressed(e);
-        overlay.repaint();
+        OverlayMetrics.recordEvent(e);
         
+        flushMotion();
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mousePressed(e);
     }
     
     /**
      * When the mouse is released above the overlay while the overlay is focussed
-     * all overlay components that are an instance of <code>MouseListener</code> 
-     * will be notified of this.
+     * the components below the mouse and the components that contain focus
+     * will be notified of this. If the overlay is not focussed then the event
+     * is passed on to the windows below the overlay by the <code>MouseReflector</code>.
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -257,20 +843,21 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
     {
         if(!focussed)
         {
-            mouseclicks.add(e);
-            overlay.repaint();
+            reflector.reflect(e);
             return;
         }
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseReleased(e);
+        OverlayMetrics.recordEvent(e);
+        
+        flushMotion();
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseReleased(e);
     }
     
     /**
      * When the mouse enters the surface of visible parts of the overlay while
-     * the overlay is focussed all overlay components that are an instance of
-     * <code>MouseListener</code> will be notified of this.
+     * the overlay is focussed the components below the mouse and the components
+     * that contain focus will be notified of this.
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -280,16 +867,17 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseEntered(e);
-        overlay.repaint();
+        OverlayMetrics.recordEvent(e);
+        
+        flushMotion();
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseEntered(e);
     }
     
     /**
      * When the mouse exits the surface of visible parts of the overlay while
-     * the overlay is focussed all overlay components that are an instance of 
-     * <code>MouseListener</code> will be notified of this.
+     * the overlay is focussed the components below the mouse and the components
+     * that contain focus will be notified of this.
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -299,15 +887,37 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof MouseListener)
-                ((MouseListener)comp).mouseExited(e);
-        overlay.repaint();
+        OverlayMetrics.recordEvent(e);
+        
+        flushMotion();
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseExited(e);
+    }
+    
+    /**
+     * When the mouse wheel is moved above the overlay while the overlay is focussed
+     * the components below the mouse and the components that contain focus will
+     * be notified of this.
+     * @see cowlite.deepswing.overlay.components.OverlayComponent
+     * @param e The latest information about the mouse wheel.
+     */
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e)
+    {
+        if(!focussed)
+            return;
+        
+        OverlayMetrics.recordEvent(e);
+        
+        flushMotion();
+        for(OverlayComponent comp : getMouseTargets(e))
+            comp.mouseWheelMoved(e);
     }
     
     /**
-     * When a key is typed while the overlay is focussed all overlay components 
-     * that are an instance of <code>KeyListener</code> will be notified of this.
+     * When a key is typed while the overlay is focussed the focus owner and the
+     * panels that contain it will be notified of this.
+     * @see FocusManager
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -317,15 +927,14 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof KeyListener)
-                ((KeyListener)comp).keyTyped(e);
-        overlay.repaint();
+        OverlayMetrics.recordEvent(e);
+        focusManager.dispatch(e);
     }
     
     /**
-     * When a key is pressed while the overlay is focussed all overlay components 
-     * that are an instance of <code>KeyListener</code> will be notified of this.
+     * When a key is pressed while the overlay is focussed the focus owner and the
+     * panels that contain it will be notified of this.
+     * @see FocusManager
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -335,15 +944,14 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof KeyListener)
-                ((KeyListener)comp).keyPressed(e);
-        overlay.repaint();
+        OverlayMetrics.recordEvent(e);
+        focusManager.dispatch(e);
     }
 
     /**
-     * When a key is released while the overlay is focussed all overlay components 
-     * that are an instance of <code>KeyListener</code> will be notified of this.
+     * When a key is released while the overlay is focussed the focus owner and the
+     * panels that contain it will be notified of this.
+     * @see FocusManager
      * @see cowlite.deepswing.overlay.components.OverlayComponent
      * @param e The latest information about the mouse.
      */
@@ -353,9 +961,7 @@ class OverlayRoot extends JPanel implements MouseMotionListener, MouseListener,
         if(!focussed)
             return;
         
-        for(OverlayComponent comp : components)
-            if(comp instanceof KeyListener)
-                ((KeyListener)comp).keyReleased(e);
-        overlay.repaint();
+        OverlayMetrics.recordEvent(e);
+        focusManager.dispatch(e);
     }
 }
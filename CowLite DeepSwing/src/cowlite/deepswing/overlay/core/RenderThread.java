@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 CowLite (http://www.cowlite.nl).
+ *
+ * This is not free software and you may not make copies of this
+ * software without explicit permission of the copyright holder.
+ * All rights reserved.
+ */
+package cowlite.deepswing.overlay.core;
+
+import java.awt.AlphaComposite;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * This thread drives the frames of the overlay when active rendering is enabled.
+ * Rather than waiting for Swing to repaint the overlay, it paints all components
+ * of the <code>OverlayRoot</code> into the <code>BufferStrategy</code> of the
+ * <code>OverlayManager</code> whenever the <code>FrameScheduler</code> asks for
+ * a frame, and shows it. The Swing repaint manager is not involved at all.
+ *
+ * <h2>Frame pacing</h2>
+ * After a frame has been shown the thread sleeps until the frame period of the
+ * scheduler has passed, so that the maximum frame rate is never exceeded. If painting
+ * takes longer than a frame then the next frame is painted right away instead of
+ * painting several frames in a row to catch up.
+ *
+ * <h2>Concurrency</h2>
+ * The components are owned by the event dispatch thread: input, listeners and
+ * the code of the application change them there. To never paint a component
+ * while it is being changed, the components are painted into the back buffer
+ * on the event dispatch thread, while this thread waits. Painting itself is
+ * therefore not taken off the event dispatch thread, as the components cannot
+ * be copied into a snapshot that could be painted elsewhere. Waiting for the
+ * next frame, showing the back buffer, restoring lost buffers and synchronizing
+ * with the display all happen on this thread, so the event dispatch thread only
+ * spends the time it takes to paint the components.
+ *
+ * @author Wessel Jongkind
+ */
+class RenderThread extends Thread
+{
+    /**
+     * The overlay window whose buffer strategy is painted into.
+     */
+    private final OverlayManager manager;
+
+    /**
+     * The root container of which the components are painted.
+     */
+    private final OverlayRoot root;
+
+    /**
+     * The scheduler that decides when a frame should be painted.
+     */
+    private final FrameScheduler scheduler;
+
+    /**
+     * True as long as the thread should keep painting frames.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new render thread. The thread does not start painting until
+     * <code>start()</code> has been called. The buffer strategy of the manager
+     * should have been created before the thread is started.
+     * @param manager The overlay window to be painted.
+     * @param root The root container of the overlay.
+     * @param scheduler The scheduler that decides when a frame should be painted.
+     */
+    public RenderThread(OverlayManager manager, OverlayRoot root, FrameScheduler scheduler)
+    {
+        super("CowLite overlay renderer");
+        this.manager = manager;
+        this.root = root;
+        this.scheduler = scheduler;
+        setDaemon(true);
+    }
+
+    /**
+     * Stops painting frames and waits until the frame that is currently being
+     * painted has finished.
+     */
+    public void shutdown()
+    {
+        running = false;
+        interrupt();
+
+        if(Thread.currentThread() == this)
+            return;
+
+        try{
+            join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        long deadline = System.nanoTime();
+
+        while(running)
+        {
+            try{
+                long remaining = deadline - System.nanoTime();
+                if(remaining > 0)
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                
+                scheduler.awaitFrame();
+            }catch(InterruptedException e){
+                //Interrupted by shutdown(), the loop condition takes care of it.
+                continue;
+            }
+
+            long start = System.nanoTime();
+            paintFrame();
+            deadline = start + scheduler.getFramePeriod();
+        }
+    }
+
+    /**
+     * Paints a single frame into the back buffer and shows it. The frame is
+     * painted again if the contents of the buffer got lost in the meantime.
+     */
+    private void paintFrame()
+    {
+        BufferStrategy strategy = manager.getBufferStrategy();
+        if(strategy == null)
+            return;
+
+        do{
+            do{
+                Graphics2D g2 = (Graphics2D) strategy.getDrawGraphics();
+                try{
+                    EventQueue.invokeAndWait(() -> paintBuffer(g2));
+                }catch(InterruptedException e){
+                    //Interrupted by shutdown(), the frame is not shown.
+                    return;
+                }catch(InvocationTargetException e){
+                    Logger.getLogger(RenderThread.class.getName()).log(Level.SEVERE, "A component could not be painted.", e.getCause());
+                }
+            }while(strategy.contentsRestored() && running);
+
+            strategy.show();
+        }while(strategy.contentsLost() && running);
+
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Paints all components into the back buffer. This runs on the event dispatch
+     * thread, and disposes the graphics when it is done, also if the thread has
+     * been shut down in the meantime.
+     * @param g2 The graphics of the back buffer.
+     */
+    private void paintBuffer(Graphics2D g2)
+    {
+        try{
+            if(!running)
+                return;
+
+            root.clearDirtyRegion();
+            Point origin = SwingUtilities.convertPoint(root, 0, 0, manager);
+
+            g2.setComposite(AlphaComposite.Src);
+            g2.setColor(root.getBackground());
+            g2.fillRect(0, 0, manager.getWidth(), manager.getHeight());
+            g2.setComposite(AlphaComposite.SrcOver);
+
+            g2.translate(origin.x, origin.y);
+            g2.clipRect(0, 0, root.getWidth(), root.getHeight());
+            root.paintOverlay(g2);
+        }finally{
+            g2.dispose();
+        }
+    }
+}
@@ -51,6 +51,9 @@ public class ComponentManager implements MouseMotionListener, MouseListener
         this.component = component;
         this.resizable = resizable;
         this.movable = movable;
+        
+        //The movement treshold counts drag events, so every drag has to be delivered
+        component.setMotionCoalescing(false);
     }
     
     public void setMovable(boolean movable)
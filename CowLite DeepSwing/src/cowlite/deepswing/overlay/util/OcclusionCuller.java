@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Wessel.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cowlite.deepswing.overlay.util;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import java.awt.Rectangle;
+
+/**
+ * This class decides which components of a container have to be painted. Containers
+ * use it before painting their children, so that children which can not be seen
+ * cost nothing.
+ *
+ * <h2>Clip culling</h2>
+ * A component is not painted if it lies completely outside of the area that is
+ * being painted. If the component is a panel then none of it's children are painted
+ * either.
+ *
+ * <h2>Occlusion culling</h2>
+ * A component is not painted if the part of it that lies within the painted area
+ * is completely covered by a single opaque component that is painted after it.
+ * Only the <code>MAX_OCCLUDERS</code> largest opaque components are remembered,
+ * so that culling stays cheap for containers with many children.
+ *
+ * <h2>Components without a size</h2>
+ * Some components, such as labels, calculate their size the first time they get
+ * painted. Components of which the size has not been set yet are always painted.
+ *
+ * @see OverlayComponent#isOpaque()
+ * @author Wessel
+ */
+public class OcclusionCuller
+{
+    /**
+     * The maximum amount of opaque components that are checked for every component.
+     */
+    public static final int MAX_OCCLUDERS = 16;
+
+    private OcclusionCuller()
+    {
+    }
+
+    /**
+     * Determines which of the components should be painted. The components are
+     * expected to be in the order in which they are painted, so that the last
+     * component lies on top.
+     * @param components The components of a container. The caller should paint the
+     *                   same array, so that the result always matches it.
+     * @param clip The area that is being painted, relative to the overlay's origin, or
+     *             null if everything is being painted.
+     * @return An array in which every element tells if the component at the same index should be painted.
+     */
+    public static boolean[] findVisible(OverlayComponent[] components, Rectangle clip)
+    {
+        int size = components.length;
+        boolean[] visible = new boolean[size];
+
+        Rectangle[] occluders = new Rectangle[MAX_OCCLUDERS];
+        int occluderCount = 0;
+
+        for(int i = size - 1; i >= 0; i--)
+        {
+            OverlayComponent comp = components[i];
+
+            if(!comp.sizeSet())
+            {
+                visible[i] = true;
+                continue;
+            }
+
+            Rectangle bounds = comp.getOverlayBounds();
+            if(clip != null)
+                bounds = bounds.intersection(clip);
+
+            if(bounds.isEmpty() || isCovered(bounds, occluders, occluderCount))
+                continue;
+
+            visible[i] = true;
+
+            if(!comp.isOpaque())
+                continue;
+
+            Rectangle opaque = comp.getOpaqueBounds();
+            if(opaque.isEmpty())
+                continue;
+
+            if(occluderCount < MAX_OCCLUDERS)
+                occluders[occluderCount++] = opaque;
+            else
+                replaceSmallest(occluders, opaque);
+        }
+
+        return visible;
+    }
+
+    private static boolean isCovered(Rectangle bounds, Rectangle[] occluders, int count)
+    {
+        for(int i = 0; i < count; i++)
+            if(occluders[i].contains(bounds))
+                return true;
+        return false;
+    }
+
+    /**
+     * Replaces the smallest occluder with the given one if the given one is larger.
+     * @param occluders The occluders, which are all set.
+     * @param opaque The area of the new occluder.
+     */
+    private static void replaceSmallest(Rectangle[] occluders, Rectangle opaque)
+    {
+        int smallest = 0;
+        for(int i = 1; i < occluders.length; i++)
+            if(area(occluders[i]) < area(occluders[smallest]))
+                smallest = i;
+
+        if(area(opaque) > area(occluders[smallest]))
+            occluders[smallest] = opaque;
+    }
+
+    private static long area(Rectangle r)
+    {
+        return (long) r.width * r.height;
+    }
+}
@@ -125,9 +125,23 @@ public class OverlayConstraints
         return c;
     }
     
+    /**
+     * The names of the constraints for <code>getValue</code> and <code>setValue</code>.
+     * @deprecated Use the typed methods instead, such as <code>gridx()</code>.
+     */
+    @Deprecated
     public static final String GRIDX = "GRIDX", GRIDY = "GRIDY", GRIDWIDTH = "GRIDWIDTH", GRIDHEIGHT = "GRIDHEIGHT", WEIGHTX = "WEIGHTX", WEIGHTY = "WEIGHTY",
             INSETS = "INSETS", RESIZING = "RESIZING";
     
+    /**
+     * Returns a constraint by it's name.
+     * @deprecated Compares strings and boxes the value on every call. Use the typed
+     *             methods instead, such as <code>gridx()</code>.
+     * @param name The name of the constraint, such as <code>GRIDX</code>.
+     * @return The value of the constraint.
+     * @throws Exception If there is no constraint with the given name.
+     */
+    @Deprecated
     public Object getValue(String name) throws Exception
     {
         if(name.equals(GRIDX))
@@ -150,6 +164,15 @@ public class OverlayConstraints
         throw new Exception("Value " + name + " has not been found.");
     }
     
+    /**
+     * Changes a constraint by it's name.
+     * @deprecated Compares strings and unboxes the value on every call. Use the typed
+     *             methods instead, such as <code>gridx(int)</code>.
+     * @param name The name of the constraint, such as <code>GRIDX</code>.
+     * @param value The new value of the constraint.
+     * @throws Exception If there is no constraint with the given name.
+     */
+    @Deprecated
     public void setValue(String name, Object value) throws Exception
     {
         if(name.equals(GRIDX))
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2017 Wessel.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cowlite.deepswing.overlay.util;
+
+import java.awt.AWTEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class records how expensive the overlay is: how many frames are painted,
+ * how long painting takes, how long each type of component takes to paint, how
+ * many layout passes are done and how many input events are dispatched.
+ *
+ * <h2>Enabling</h2>
+ * Metrics are disabled by default. While they are disabled the record methods
+ * return immediately, so the overlay does not pay for metrics it does not use. When
+ * metrics get enabled for the first time they are registered with the platform
+ * MBean server under <code>OBJECT_NAME</code>.
+ *
+ * <h2>Percentiles</h2>
+ * The paint times of the last <code>HISTORY_SIZE</code> frames are remembered.
+ * Averages and percentiles of frame paint times are calculated over those frames
+ * when they are requested.
+ *
+ * @see OverlayMetricsMXBean
+ * @author Wessel
+ */
+public class OverlayMetrics implements OverlayMetricsMXBean
+{
+    /**
+     * The name under which the metrics are registered with the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "cowlite.deepswing:type=OverlayMetrics";
+
+    /**
+     * The amount of frames of which the paint time is remembered.
+     */
+    public static final int HISTORY_SIZE = 1024;
+
+    private static final OverlayMetrics INSTANCE = new OverlayMetrics();
+
+    /**
+     * True if metrics are being recorded. It is read on every record call, so it
+     * is the only thing that costs anything while metrics are disabled.
+     */
+    private static volatile boolean enabled = false;
+
+    private static boolean registered = false;
+
+    /**
+     * The moments at which the recent frames finished, in nanoseconds.
+     */
+    private final long[] frameTimestamps = new long[HISTORY_SIZE];
+
+    /**
+     * The time it took to paint each of the recent frames, in nanoseconds.
+     */
+    private final long[] frameDurations = new long[HISTORY_SIZE];
+
+    /**
+     * The total amount of frames that have been recorded.
+     */
+    private long frameCount = 0;
+
+    private final Map<Class<?>, Counter> componentPaints = new ConcurrentHashMap<>();
+
+    private final Map<Integer, LongAdder> events = new ConcurrentHashMap<>();
+
+    private final Counter layouts = new Counter();
+
+    private OverlayMetrics()
+    {
+    }
+
+    /**
+     * Returns the object through which the recorded metrics can be read.
+     * @return The overlay metrics.
+     */
+    public static OverlayMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Tells wether or not metrics are being recorded. Code that has to measure
+     * time before recording it should check this first.
+     * @return True if metrics are enabled, otherwise false.
+     */
+    public static boolean isRecording()
+    {
+        return enabled;
+    }
+
+    /**
+     * Records that a frame has been painted.
+     * @param nanos The time it took to paint the frame, in nanoseconds.
+     */
+    public static void recordFrame(long nanos)
+    {
+        if(!enabled)
+            return;
+
+        INSTANCE.addFrame(System.nanoTime(), nanos);
+    }
+
+    /**
+     * Records that a component has been painted.
+     * @param type The class of the component.
+     * @param nanos The time it took to paint the component, in nanoseconds.
+     */
+    public static void recordComponentPaint(Class<?> type, long nanos)
+    {
+        if(!enabled)
+            return;
+
+        INSTANCE.componentPaints.computeIfAbsent(type, k -> new Counter()).add(nanos);
+    }
+
+    /**
+     * Records that a layout pass has been done.
+     * @param nanos The time the layout pass took, in nanoseconds.
+     */
+    public static void recordLayout(long nanos)
+    {
+        if(!enabled)
+            return;
+
+        INSTANCE.layouts.add(nanos);
+    }
+
+    /**
+     * Records that an input event has been dispatched to the components of the overlay.
+     * @param e The event that has been dispatched.
+     */
+    public static void recordEvent(AWTEvent e)
+    {
+        if(!enabled)
+            return;
+
+        INSTANCE.events.computeIfAbsent(e.getID(), k -> new LongAdder()).increment();
+    }
+
+    private synchronized void addFrame(long timestamp, long nanos)
+    {
+        int index = (int) (frameCount % HISTORY_SIZE);
+        frameTimestamps[index] = timestamp;
+        frameDurations[index] = nanos;
+        frameCount++;
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the recording of metrics. The first time metrics get
+     * enabled they are registered with the platform MBean server.
+     * @param enabled True if metrics should be recorded, otherwise false.
+     */
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        if(enabled)
+            register();
+        OverlayMetrics.enabled = enabled;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server if that has not happened yet.
+     */
+    private static synchronized void register()
+    {
+        if(registered)
+            return;
+        registered = true;
+
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name))
+                server.registerMBean(INSTANCE, name);
+        }catch(JMException | SecurityException e){
+            Logger.getLogger(OverlayMetrics.class.getName()).log(Level.WARNING, "Overlay metrics could not be registered.", e);
+        }
+    }
+
+    @Override
+    public synchronized int getFramesPerSecond()
+    {
+        long since = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        int frames = 0;
+        int recorded = (int) Math.min(frameCount, HISTORY_SIZE);
+
+        for(int i = 0; i < recorded; i++)
+            if(frameTimestamps[i] - since > 0)
+                frames++;
+
+        return frames;
+    }
+
+    @Override
+    public synchronized long getFrameCount()
+    {
+        return frameCount;
+    }
+
+    @Override
+    public double getAveragePaintTime()
+    {
+        long[] durations = getRecentDurations();
+        if(durations.length == 0)
+            return 0;
+
+        long total = 0;
+        for(long duration : durations)
+            total += duration;
+
+        return toMillis(total / (double) durations.length);
+    }
+
+    @Override
+    public double getPaintTime50thPercentile()
+    {
+        return getPaintTimePercentile(50);
+    }
+
+    @Override
+    public double getPaintTime95thPercentile()
+    {
+        return getPaintTimePercentile(95);
+    }
+
+    @Override
+    public double getPaintTime99thPercentile()
+    {
+        return getPaintTimePercentile(99);
+    }
+
+    @Override
+    public double getMaximumPaintTime()
+    {
+        return getPaintTimePercentile(100);
+    }
+
+    /**
+     * Calculates the paint time below which the given percentage of the recent frames
+     * have been painted, using the nearest-rank method.
+     * @param percentile The percentage of frames, between 0 and 100.
+     * @return The paint time in milliseconds, or 0 if no frames have been recorded.
+     */
+    public double getPaintTimePercentile(double percentile)
+    {
+        long[] durations = getRecentDurations();
+        if(durations.length == 0)
+            return 0;
+
+        Arrays.sort(durations);
+        int rank = (int) Math.ceil(percentile / 100.0 * durations.length);
+        rank = Math.min(Math.max(rank, 1), durations.length);
+
+        return toMillis(durations[rank - 1]);
+    }
+
+    private synchronized long[] getRecentDurations()
+    {
+        int recorded = (int) Math.min(frameCount, HISTORY_SIZE);
+        return Arrays.copyOf(frameDurations, recorded);
+    }
+
+    @Override
+    public Map<String, Double> getComponentPaintTimes()
+    {
+        Map<String, Double> times = new TreeMap<>();
+        for(Map.Entry<Class<?>, Counter> entry : componentPaints.entrySet())
+            times.put(entry.getKey().getName(), entry.getValue().getAverageMillis());
+        return times;
+    }
+
+    @Override
+    public Map<String, Long> getComponentPaintCounts()
+    {
+        Map<String, Long> counts = new TreeMap<>();
+        for(Map.Entry<Class<?>, Counter> entry : componentPaints.entrySet())
+            counts.put(entry.getKey().getName(), entry.getValue().getCount());
+        return counts;
+    }
+
+    @Override
+    public long getLayoutPasses()
+    {
+        return layouts.getCount();
+    }
+
+    @Override
+    public double getAverageLayoutTime()
+    {
+        return layouts.getAverageMillis();
+    }
+
+    @Override
+    public Map<String, Long> getEventDispatchCounts()
+    {
+        Map<String, Long> counts = new TreeMap<>();
+        for(Map.Entry<Integer, LongAdder> entry : events.entrySet())
+            counts.put(getEventName(entry.getKey()), entry.getValue().sum());
+        return counts;
+    }
+
+    @Override
+    public void reset()
+    {
+        synchronized(this)
+        {
+            frameCount = 0;
+        }
+        componentPaints.clear();
+        events.clear();
+        layouts.reset();
+    }
+
+    /**
+     * Returns a readable name for the id of an input event.
+     * @param id The id of the event.
+     * @return The name of the event type.
+     */
+    private static String getEventName(int id)
+    {
+        switch(id)
+        {
+            case MouseEvent.MOUSE_CLICKED: return "mouseClicked";
+            case MouseEvent.MOUSE_PRESSED: return "mousePressed";
+            case MouseEvent.MOUSE_RELEASED: return "mouseReleased";
+            case MouseEvent.MOUSE_MOVED: return "mouseMoved";
+            case MouseEvent.MOUSE_DRAGGED: return "mouseDragged";
+            case MouseEvent.MOUSE_ENTERED: return "mouseEntered";
+            case MouseEvent.MOUSE_EXITED: return "mouseExited";
+            case MouseEvent.MOUSE_WHEEL: return "mouseWheelMoved";
+            case KeyEvent.KEY_TYPED: return "keyTyped";
+            case KeyEvent.KEY_PRESSED: return "keyPressed";
+            case KeyEvent.KEY_RELEASED: return "keyReleased";
+            default: return "event " + id;
+        }
+    }
+
+    private static double toMillis(double nanos)
+    {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Counts how often something happened and how long it took in total.
+     */
+    private static class Counter
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void add(long time)
+        {
+            count.increment();
+            nanos.add(time);
+        }
+
+        long getCount()
+        {
+            return count.sum();
+        }
+
+        double getAverageMillis()
+        {
+            long amount = count.sum();
+            return amount == 0 ? 0 : toMillis(nanos.sum() / (double) amount);
+        }
+
+        void reset()
+        {
+            count.reset();
+            nanos.reset();
+        }
+    }
+}
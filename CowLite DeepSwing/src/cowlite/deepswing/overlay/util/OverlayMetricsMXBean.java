@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Wessel.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cowlite.deepswing.overlay.util;
+
+import java.util.Map;
+
+/**
+ * The management interface of <code>OverlayMetrics</code>. Once metrics have been
+ * enabled it is registered with the platform MBean server under the name
+ * <code>OverlayMetrics.OBJECT_NAME</code>, so that monitoring tools can read it.
+ * All times are in milliseconds.
+ * 
+ * @see OverlayMetrics
+ * @author Wessel
+ */
+public interface OverlayMetricsMXBean
+{
+    public boolean isEnabled();
+    
+    public void setEnabled(boolean enabled);
+    
+    /**
+     * @return The amount of frames that have been painted during the last second.
+     */
+    public int getFramesPerSecond();
+    
+    /**
+     * @return The total amount of frames that have been painted.
+     */
+    public long getFrameCount();
+    
+    /**
+     * @return The average time it took to paint one of the recent frames.
+     */
+    public double getAveragePaintTime();
+    
+    /**
+     * @return The median time it took to paint one of the recent frames.
+     */
+    public double getPaintTime50thPercentile();
+    
+    /**
+     * @return The time within which 95% of the recent frames have been painted.
+     */
+    public double getPaintTime95thPercentile();
+    
+    /**
+     * @return The time within which 99% of the recent frames have been painted.
+     */
+    public double getPaintTime99thPercentile();
+    
+    /**
+     * @return The longest time it took to paint one of the recent frames.
+     */
+    public double getMaximumPaintTime();
+    
+    /**
+     * @return The average time it took to paint a component, per component class.
+     * The time of a container includes the time of it's children.
+     */
+    public Map<String, Double> getComponentPaintTimes();
+    
+    /**
+     * @return The amount of times a component has been painted, per component class.
+     */
+    public Map<String, Long> getComponentPaintCounts();
+    
+    /**
+     * @return The total amount of layout passes.
+     */
+    public long getLayoutPasses();
+    
+    /**
+     * @return The average time that a layout pass took.
+     */
+    public double getAverageLayoutTime();
+    
+    /**
+     * @return The amount of input events that have been dispatched, per event type.
+     */
+    public Map<String, Long> getEventDispatchCounts();
+    
+    /**
+     * Clears all recorded metrics.
+     */
+    public void reset();
+}
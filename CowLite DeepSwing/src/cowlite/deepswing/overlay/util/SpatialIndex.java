@@ -0,0 +1,284 @@
+/*
+ * Copyright 2017 Wessel.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cowlite.deepswing.overlay.util;
+
+import cowlite.deepswing.overlay.components.OverlayComponent;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class finds the components that lie below a point without looking at
+ * every component. Containers use it to pass mouse events only to the children
+ * that are below the mouse.
+ *
+ * <h2>Uniform grid</h2>
+ * The area of the container is divided into square cells of <code>cellSize</code>
+ * pixels. Every component is stored in each cell that it overlaps, so a query only
+ * has to look at the components of a single cell. Components that would overlap
+ * more than <code>MAX_CELLS</code> cells, such as a background panel that covers
+ * the whole overlay, are kept in a separate list that is checked on every query.
+ *
+ * <h2>Order</h2>
+ * Components are ordered the way they are painted: a component that has been
+ * inserted later is painted on top of the components inserted before it. Moving
+ * or resizing a component with <code>update</code> does not change it's order.
+ *
+ * @author Wessel
+ */
+public class SpatialIndex
+{
+    /**
+     * The default width and height of a cell, in pixels.
+     */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    /**
+     * The maximum amount of cells a component is stored in. Larger components
+     * are stored in <code>large</code> instead.
+     */
+    public static final int MAX_CELLS = 256;
+
+    private final int cellSize;
+
+    /**
+     * The components per cell. The key contains the column of the cell in the
+     * upper 32 bits and the row in the lower 32 bits.
+     */
+    private final Map<Long, ArrayList<Entry>> cells = new HashMap<>();
+
+    /**
+     * The components that overlap too many cells to be stored per cell.
+     */
+    private final ArrayList<Entry> large = new ArrayList<>();
+
+    private final Map<OverlayComponent, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * The order that is given to the next component that gets inserted.
+     */
+    private long nextOrder = 0;
+
+    /**
+     * Constructs a new index with cells of <code>DEFAULT_CELL_SIZE</code> pixels.
+     * @see #DEFAULT_CELL_SIZE
+     */
+    public SpatialIndex()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructs a new index with cells of the given size.
+     * @param cellSize The width and height of a cell, in pixels.
+     */
+    public SpatialIndex(int cellSize)
+    {
+        if(cellSize <= 0)
+            throw new IllegalArgumentException("The cell size must be positive, but was " + cellSize + ".");
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds a component to the index. It is placed on top of all components that
+     * are already in the index. If the component is already in the index then it
+     * is only moved to the given bounds.
+     * @param comp The component to be added.
+     * @param bounds The area the component occupies.
+     */
+    public void insert(OverlayComponent comp, Rectangle bounds)
+    {
+        if(entries.containsKey(comp))
+        {
+            update(comp, bounds);
+            return;
+        }
+
+        Entry entry = new Entry(comp, new Rectangle(bounds), nextOrder++);
+        entries.put(comp, entry);
+        store(entry);
+    }
+
+    /**
+     * Changes the area that a component occupies. Nothing happens if the component
+     * is not in the index.
+     * @param comp The component that has been moved or resized.
+     * @param bounds The area the component occupies now.
+     */
+    public void update(OverlayComponent comp, Rectangle bounds)
+    {
+        Entry entry = entries.get(comp);
+        if(entry == null || entry.bounds.equals(bounds))
+            return;
+
+        discard(entry);
+        entry.bounds.setBounds(bounds);
+        store(entry);
+    }
+
+    /**
+     * Removes a component from the index.
+     * @param comp The component to be removed.
+     */
+    public void remove(OverlayComponent comp)
+    {
+        Entry entry = entries.remove(comp);
+        if(entry != null)
+            discard(entry);
+    }
+
+    /**
+     * Removes all components from the index.
+     */
+    public void clear()
+    {
+        cells.clear();
+        large.clear();
+        entries.clear();
+    }
+
+    public boolean contains(OverlayComponent comp)
+    {
+        return entries.containsKey(comp);
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns all components of which the area contains the given point. The
+     * topmost component comes first.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The components below the point, topmost first.
+     */
+    public ArrayList<OverlayComponent> query(int x, int y)
+    {
+        ArrayList<Entry> hits = new ArrayList<>();
+
+        ArrayList<Entry> cell = cells.get(key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize)));
+        if(cell != null)
+            for(Entry entry : cell)
+                if(entry.bounds.contains(x, y))
+                    hits.add(entry);
+
+        for(Entry entry : large)
+            if(entry.bounds.contains(x, y))
+                hits.add(entry);
+
+        hits.sort((e1, e2) -> Long.compare(e2.order, e1.order));
+
+        ArrayList<OverlayComponent> components = new ArrayList<>(hits.size());
+        for(Entry entry : hits)
+            components.add(entry.comp);
+        return components;
+    }
+
+    /**
+     * Puts an entry in all cells that it's bounds overlap, or in <code>large</code>
+     * if it overlaps too many cells. Entries with empty bounds are not stored,
+     * as no point lies within them.
+     * @param entry The entry to be stored.
+     */
+    private void store(Entry entry)
+    {
+        Rectangle b = entry.bounds;
+        if(b.isEmpty())
+            return;
+
+        int minColumn = Math.floorDiv(b.x, cellSize);
+        int minRow = Math.floorDiv(b.y, cellSize);
+        int maxColumn = Math.floorDiv(b.x + b.width - 1, cellSize);
+        int maxRow = Math.floorDiv(b.y + b.height - 1, cellSize);
+
+        if((long) (maxColumn - minColumn + 1) * (maxRow - minRow + 1) > MAX_CELLS)
+        {
+            entry.large = true;
+            large.add(entry);
+            return;
+        }
+
+        entry.large = false;
+        for(int column = minColumn; column <= maxColumn; column++)
+            for(int row = minRow; row <= maxRow; row++)
+                cells.computeIfAbsent(key(column, row), k -> new ArrayList<>(4)).add(entry);
+    }
+
+    /**
+     * Removes an entry from all cells that it has been stored in.
+     * @param entry The entry to be removed.
+     */
+    private void discard(Entry entry)
+    {
+        Rectangle b = entry.bounds;
+        if(b.isEmpty())
+            return;
+
+        if(entry.large)
+        {
+            large.remove(entry);
+            return;
+        }
+
+        int minColumn = Math.floorDiv(b.x, cellSize);
+        int minRow = Math.floorDiv(b.y, cellSize);
+        int maxColumn = Math.floorDiv(b.x + b.width - 1, cellSize);
+        int maxRow = Math.floorDiv(b.y + b.height - 1, cellSize);
+
+        for(int column = minColumn; column <= maxColumn; column++)
+        {
+            for(int row = minRow; row <= maxRow; row++)
+            {
+                Long key = key(column, row);
+                ArrayList<Entry> cell = cells.get(key);
+                if(cell == null)
+                    continue;
+
+                cell.remove(entry);
+                if(cell.isEmpty())
+                    cells.remove(key);
+            }
+        }
+    }
+
+    private static long key(int column, int row)
+    {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A component in the index, together with it's area and order.
+     */
+    private static class Entry
+    {
+        final OverlayComponent comp;
+        final Rectangle bounds;
+        final long order;
+        boolean large;
+
+        Entry(OverlayComponent comp, Rectangle bounds, long order)
+        {
+            this.comp = comp;
+            this.bounds = bounds;
+            this.order = order;
+        }
+    }
+}